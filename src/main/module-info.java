@@ -12,6 +12,7 @@ module paliplatform {
 	requires org.apache.lucene.core;
  	requires org.apache.lucene.analysis.common;
 	requires org.apache.lucene.queryparser;
+	requires org.apache.lucene.queries;
 	requires org.apache.lucene.highlighter;
 	exports paliplatform;
 	opens paliplatform.toctree to javafx.base;
@@ -31,12 +31,13 @@ import javafx.stage.Modality;
 /** 
  * The about dialog. This is a singleton.
  * @author J.R. Bhaddacak
- * @version 2.0
+ * @version 2.1
  * @since 2.0
  */
 class About extends Stage {
 	static final About INSTANCE = new About();
 	private final TextArea otherInfo = new TextArea();
+	private final Label runtimeInfo = new Label();
 	
 	private About() {
         setTitle("About");
@@ -82,7 +83,8 @@ class About extends Stage {
 		otherInfo.setWrapText(true);
 		final Button aboutClose = new Button("Close");
 		aboutClose.setOnAction(actionEvent -> close());
-		aboutBox.getChildren().addAll(logoBox, otherInfo, aboutClose);
+		runtimeInfo.setFont(Font.font(Utilities.FONTSANS, FontWeight.MEDIUM, Utilities.getRelativeSize(0.85)));
+		aboutBox.getChildren().addAll(logoBox, runtimeInfo, otherInfo, aboutClose);
 		final Scene aboutContent = new Scene(aboutBox, Utilities.getRelativeSize(45), Utilities.getRelativeSize(37));
 		setOnShowing(e -> refreshTheme());
 		setScene(aboutContent);
@@ -93,6 +95,13 @@ class About extends Stage {
 			otherInfo.setText(text);
 		otherInfo.home();	
 	}
+
+	/**
+	 * Sets the information of the current session, e.g., reading metrics.
+	 */
+	public void setRuntimeInfo(final String text) {
+		runtimeInfo.setText(text);
+	}
 	
     public void refreshTheme() {
 		final Scene scene = getScene();
@@ -0,0 +1,263 @@
+/*
+ * CorpusPack.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform;
+
+import java.util.*;
+import java.util.zip.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+import javafx.concurrent.Task;
+
+/**
+ * The pre-extracted form of the CSCD collection. All documents in the archive
+ * are stored uncompressed one after another in a single pack file, and their
+ * offsets are kept in a separate binary index. The pack is memory-mapped,
+ * so a document is served as a read-only slice of the mapping without inflating.
+ * The index also records the size and time of the archive it was made from,
+ * a pack not matching the current archive is ignored.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+public class CorpusPack {
+	private static final int MAGIC = 0x50504350; // "PPCP"
+	private static final int VERSION = 1;
+	private final Map<String, long[]> offsetMap = new HashMap<>();
+	private final List<String> fileNameList = new ArrayList<>();
+	private final ByteBuffer mappedBuffer;
+
+	private CorpusPack(final ByteBuffer buffer) {
+		mappedBuffer = buffer;
+	}
+
+	public static File getPackFile() {
+		return new File(Utilities.ROOTDIR + Utilities.COLLPATH + Utilities.CSCD_PACK);
+	}
+
+	public static File getIndexFile() {
+		return new File(Utilities.ROOTDIR + Utilities.COLLPATH + Utilities.CSCD_PACK_INDEX);
+	}
+
+	public static File getArchiveFile() {
+		return new File(Utilities.ROOTDIR + Utilities.COLLPATH + Utilities.CSCD_ZIP);
+	}
+
+	/**
+	 * Opens and maps the pack, or returns null if there is no usable pack.
+	 */
+	public static CorpusPack open() {
+		final File packFile = getPackFile();
+		final File indexFile = getIndexFile();
+		if(!packFile.exists() || !indexFile.exists())
+			return null;
+		CorpusPack result = null;
+		try(final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			final long zipLength = in.readLong();
+			final long zipModified = in.readLong();
+			final File zipFile = getArchiveFile();
+			if(zipFile.exists() && (zipFile.length() != zipLength || zipFile.lastModified() != zipModified))
+				return null;
+			final long packLength = in.readLong();
+			if(packFile.length() != packLength || packLength > Integer.MAX_VALUE)
+				return null;
+			final ByteBuffer buffer;
+			try(final FileChannel channel = FileChannel.open(packFile.toPath(), StandardOpenOption.READ)) {
+				// the mapping remains valid after the channel is closed
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, packLength);
+			}
+			result = new CorpusPack(buffer);
+			final int count = in.readInt();
+			for(int i = 0; i < count; i++) {
+				final String name = in.readUTF();
+				final long offset = in.readLong();
+				final long length = in.readLong();
+				final long crc = in.readLong();
+				result.offsetMap.put(name, new long[] { offset, length, crc });
+				result.fileNameList.add(name);
+			}
+		} catch(IOException e) {
+			System.err.println(e);
+			result = null;
+		}
+		return result;
+	}
+
+	public boolean hasEntry(final String filename) {
+		return offsetMap.containsKey(filename);
+	}
+
+	/**
+	 * Returns a read-only slice of the mapped pack containing the document,
+	 * or null if there is no such document.
+	 */
+	public ByteBuffer getBuffer(final String filename) {
+		final long[] info = offsetMap.get(filename);
+		if(info == null)
+			return null;
+		final ByteBuffer dup = mappedBuffer.duplicate();
+		dup.position((int)info[0]);
+		dup.limit((int)(info[0] + info[1]));
+		return dup.slice().asReadOnlyBuffer();
+	}
+
+	public long getLength(final String filename) {
+		final long[] info = offsetMap.get(filename);
+		return info == null ? -1 : info[1];
+	}
+
+	public long getCrc(final String filename) {
+		final long[] info = offsetMap.get(filename);
+		return info == null ? -1 : info[2];
+	}
+
+	public InputStream getInputStream(final String filename) {
+		final ByteBuffer buffer = getBuffer(filename);
+		return buffer == null ? null : new ByteBufferInputStream(buffer);
+	}
+
+	public List<String> getFileNames() {
+		return Collections.unmodifiableList(fileNameList);
+	}
+
+	/**
+	 * Creates the task converting the archive into a pack. The files are
+	 * written under temporary names first, then moved into place.
+	 */
+	public static Task<Boolean> createBuildTask() {
+		return new Task<Boolean>() {
+			@Override
+			protected Boolean call() throws Exception {
+				updateMessage("Building corpus pack (please wait)");
+				final File zipFile = getArchiveFile();
+				if(!zipFile.exists())
+					return false;
+				final File packTemp = new File(getPackFile().getPath() + ".tmp");
+				final File indexTemp = new File(getIndexFile().getPath() + ".tmp");
+				// the temporary files are not left, e.g., when failed or cancelled
+				boolean isMoved = false;
+				try {
+					try(final ZipFile zip = new ZipFile(zipFile);
+						final OutputStream pout = new BufferedOutputStream(new FileOutputStream(packTemp), 1 << 16);
+						final DataOutputStream iout = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexTemp)))) {
+						final List<String> names = new ArrayList<>();
+						final List<long[]> infos = new ArrayList<>();
+						final byte[] buf = new byte[1 << 16];
+						final CRC32 crc = new CRC32();
+						final int total = zip.size();
+						long offset = 0;
+						int n = 0;
+						for(final Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+							updateProgress(++n, total);
+							if(isCancelled())
+								return false;
+							final ZipEntry entry = e.nextElement();
+							if(entry.isDirectory()) continue;
+							final String ename = entry.getName();
+							crc.reset();
+							long length = 0;
+							try(final InputStream in = zip.getInputStream(entry)) {
+								int r;
+								while((r = in.read(buf)) > 0) {
+									pout.write(buf, 0, r);
+									crc.update(buf, 0, r);
+									length += r;
+								}
+							}
+							names.add(ename.substring(ename.lastIndexOf("/") + 1));
+							infos.add(new long[] { offset, length, crc.getValue() });
+							offset += length;
+						}
+						iout.writeInt(MAGIC);
+						iout.writeInt(VERSION);
+						iout.writeLong(zipFile.length());
+						iout.writeLong(zipFile.lastModified());
+						iout.writeLong(offset);
+						iout.writeInt(names.size());
+						for(int i = 0; i < names.size(); i++) {
+							final long[] info = infos.get(i);
+							iout.writeUTF(names.get(i));
+							iout.writeLong(info[0]);
+							iout.writeLong(info[1]);
+							iout.writeLong(info[2]);
+						}
+					}
+					try {
+						Files.move(packTemp.toPath(), getPackFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+						Files.move(indexTemp.toPath(), getIndexFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+						isMoved = true;
+						// only now, so that a read in between does not keep the old pack
+						CorpusStore.INSTANCE.releasePack();
+					} catch(IOException e) {
+						System.err.println(e);
+						return false;
+					}
+					return true;
+				} finally {
+					if(!isMoved) {
+						packTemp.delete();
+						indexTemp.delete();
+					}
+				}
+			}
+		};
+	}
+
+	// inner classes
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(final ByteBuffer buf) {
+			buffer = buf;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] buf, final int off, final int len) {
+			if(len == 0)
+				return 0;
+			if(!buffer.hasRemaining())
+				return -1;
+			final int n = Math.min(len, buffer.remaining());
+			buffer.get(buf, off, n);
+			return n;
+		}
+
+		@Override
+		public long skip(final long n) {
+			final int k = (int)Math.max(0, Math.min(n, buffer.remaining()));
+			buffer.position(buffer.position() + k);
+			return k;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
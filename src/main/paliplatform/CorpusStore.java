@@ -0,0 +1,266 @@
+/*
+ * CorpusStore.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform;
+
+import java.util.*;
+import java.util.zip.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This manages the access to the CSCD collection archive. This is a singleton.
+ * The archive is opened only once and its entries are mapped by file name,
+ * so that every reader shares the same central directory. ZipFile allows
+ * concurrent entry streams, hence this can be used by several threads at once.
+ * If a pre-extracted pack of the archive is present (see {@link CorpusPack}),
+ * documents are served from the pack instead, and the archive is the fallback.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+public class CorpusStore {
+	public static final CorpusStore INSTANCE = new CorpusStore();
+	private final Map<String, ZipEntry> entryMap = new HashMap<>();
+	private final List<String> fileNameList = new ArrayList<>();
+	private final AtomicLong openCount = new AtomicLong();
+	private final AtomicLong streamCount = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+	private ZipFile zip = null;
+	private CorpusPack pack = null;
+	private boolean packChecked = false;
+
+	private CorpusStore() {
+	}
+
+	/**
+	 * Opens the archive (if not yet) and builds the entry-name map.
+	 */
+	private synchronized ZipFile getZip() throws IOException {
+		if(zip == null) {
+			final ZipFile zfile = new ZipFile(new File(Utilities.ROOTDIR + Utilities.COLLPATH + Utilities.CSCD_ZIP));
+			entryMap.clear();
+			fileNameList.clear();
+			for(final Enumeration<? extends ZipEntry> e = zfile.entries(); e.hasMoreElements();) {
+				final ZipEntry entry = e.nextElement();
+				if(entry.isDirectory()) continue;
+				final String ename = entry.getName();
+				final String name = ename.substring(ename.lastIndexOf("/") + 1);
+				entryMap.put(name, entry);
+				fileNameList.add(name);
+			}
+			zip = zfile;
+			openCount.incrementAndGet();
+		}
+		return zip;
+	}
+
+	/**
+	 * Returns the pack if it is present and up to date, otherwise null.
+	 */
+	private synchronized CorpusPack getPack() {
+		if(!packChecked) {
+			pack = CorpusPack.open();
+			packChecked = true;
+		}
+		return pack;
+	}
+
+	/**
+	 * Drops the current pack, so that it will be checked again on the next read.
+	 */
+	public synchronized void releasePack() {
+		pack = null;
+		packChecked = false;
+	}
+
+	public boolean isPackInUse() {
+		return getPack() != null;
+	}
+
+	public ZipEntry getEntry(final String filename) {
+		ZipEntry result = null;
+		try {
+			getZip();
+			result = entryMap.get(filename);
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the CRC and size of a document as a string, used to detect
+	 * changes of the source. An empty string is returned if there is no such document.
+	 */
+	public String getEntryStamp(final String filename) {
+		final long size = getEntrySize(filename);
+		return size < 0 ? "" : Long.toHexString(getEntryCrc(filename)) + "-" + size;
+	}
+
+	/**
+	 * Returns the CRC-32 of a document, or -1 if there is no such document.
+	 */
+	public long getEntryCrc(final String filename) {
+		final CorpusPack cpack = getPack();
+		if(cpack != null && cpack.hasEntry(filename))
+			return cpack.getCrc(filename);
+		final ZipEntry entry = getEntry(filename);
+		return entry == null ? -1 : entry.getCrc();
+	}
+
+	/**
+	 * Returns the uncompressed size of a document, or -1 if there is no such document.
+	 */
+	public long getEntrySize(final String filename) {
+		final CorpusPack cpack = getPack();
+		if(cpack != null && cpack.hasEntry(filename))
+			return cpack.getLength(filename);
+		final ZipEntry entry = getEntry(filename);
+		return entry == null ? -1 : entry.getSize();
+	}
+
+	/**
+	 * Returns a read-only slice of the document from the pack, or null
+	 * if the pack is not in use or has no such document.
+	 */
+	public ByteBuffer getBuffer(final String filename) {
+		final CorpusPack cpack = getPack();
+		return cpack == null ? null : cpack.getBuffer(filename);
+	}
+
+	/**
+	 * Returns a new stream of an entry, or null if the entry does not exist.
+	 * The caller is responsible for closing the stream.
+	 */
+	public InputStream getInputStream(final String filename) throws IOException {
+		final CorpusPack cpack = getPack();
+		if(cpack != null) {
+			final InputStream in = cpack.getInputStream(filename);
+			if(in != null) {
+				streamCount.incrementAndGet();
+				return new CountingInputStream(in);
+			}
+		}
+		final ZipFile zfile = getZip();
+		final ZipEntry entry = entryMap.get(filename);
+		if(entry == null)
+			return null;
+		streamCount.incrementAndGet();
+		return new CountingInputStream(zfile.getInputStream(entry));
+	}
+
+	/**
+	 * Returns a string identifying the current state of the collection,
+	 * used to invalidate data derived from it.
+	 */
+	public String getCorpusStamp() {
+		final File zfile = CorpusPack.getArchiveFile();
+		if(zfile.exists())
+			return "zip:" + zfile.length() + ":" + zfile.lastModified();
+		final File pfile = CorpusPack.getIndexFile();
+		return pfile.exists() ? "pack:" + pfile.length() + ":" + pfile.lastModified() : "";
+	}
+
+	/**
+	 * Returns the whole content of a document decoded as UTF-8, or null
+	 * if the document does not exist. From the pack, this is decoded
+	 * directly from the mapped slice without an intermediate copy.
+	 */
+	public CharBuffer getCharContent(final String filename) throws IOException {
+		final ByteBuffer buffer = getBuffer(filename);
+		if(buffer != null) {
+			streamCount.incrementAndGet();
+			bytesRead.addAndGet(buffer.remaining());
+			return StandardCharsets.UTF_8.decode(buffer);
+		}
+		final InputStream in = getInputStream(filename);
+		if(in == null)
+			return null;
+		try(in) {
+			return StandardCharsets.UTF_8.decode(ByteBuffer.wrap(in.readAllBytes()));
+		}
+	}
+
+	/**
+	 * Returns all file names in the archive, in the archive's order.
+	 * The list is a snapshot, not changed by closing the store.
+	 */
+	public List<String> getFileNames() {
+		final CorpusPack cpack = getPack();
+		if(cpack != null)
+			return cpack.getFileNames();
+		synchronized(this) {
+			try {
+				getZip();
+			} catch(IOException e) {
+				System.err.println(e);
+			}
+			return List.copyOf(fileNameList);
+		}
+	}
+
+	/**
+	 * Returns the source in use and the counts of reading, shown in the about dialog.
+	 */
+	public String getMetrics() {
+		return String.format("Source: %s | Archive opened: %,d | Entries read: %,d | Bytes read: %,d",
+							isPackInUse() ? "pack" : "zip", openCount.get(), streamCount.get(), bytesRead.get());
+	}
+
+	public synchronized void close() {
+		releasePack();
+		if(zip != null) {
+			try {
+				zip.close();
+			} catch(IOException e) {
+				System.err.println(e);
+			}
+			zip = null;
+			entryMap.clear();
+			fileNameList.clear();
+		}
+	}
+
+	// inner classes
+	private class CountingInputStream extends FilterInputStream {
+		private CountingInputStream(final InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			if(b >= 0)
+				bytesRead.incrementAndGet();
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] buf, final int off, final int len) throws IOException {
+			final int n = super.read(buf, off, len);
+			if(n > 0)
+				bytesRead.addAndGet(n);
+			return n;
+		}
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ * HtmlCache.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+import java.util.zip.*;
+import java.io.*;
+import java.nio.file.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The cache of HTML bodies transformed from XML documents, see Utilities.readXML.
+ * This is an LRU cache bounded by the total length of the bodies kept,
+ * so a few large commentary volumes do not hold too much memory.
+ * Bodies are also written to the disk cache, so they can be reused across sessions.
+ * The disk cache is written by its own low-priority thread, and bounded by
+ * the total size of the files, the least recently used ones are removed first.
+ * A disk entry is keyed by the document's name, its source stamp (CRC and size,
+ * or time and size for extra documents), and the hash of the stylesheet.
+ * How often each document is opened is recorded, and the most opened ones
+ * are pre-rendered at start-up by a low-priority thread. This is a singleton.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+public class HtmlCache {
+	public static final HtmlCache INSTANCE = new HtmlCache();
+	private static final long MAX_CHARS = 32L * 1024 * 1024;
+	private static final long MAX_DISK_BYTES = 256L * 1024 * 1024;
+	private static final String OPENCOUNT_FILE = "opencount.properties";
+	private static final String SUFFIX = ".html.gz";
+	private static final int WARM_MAX = 20;
+	private final Properties openCountProps = new Properties();
+	private boolean openCountLoaded = false;
+	private String stylesheetHash = null;
+	private final LinkedHashMap<String, String> memoryMap = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalChars = 0;
+	private long hitCount = 0;
+	private long missCount = 0;
+	private final ExecutorService diskWriter = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "html-cache-writer");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+
+	private HtmlCache() {
+	}
+
+	public synchronized String get(final String key) {
+		final String result = memoryMap.get(key);
+		if(result == null)
+			missCount++;
+		else
+			hitCount++;
+		return result;
+	}
+
+	public synchronized void put(final String key, final String html) {
+		if(html.length() > MAX_CHARS) return;
+		final String old = memoryMap.put(key, html);
+		if(old != null)
+			totalChars -= old.length();
+		totalChars += html.length();
+		// evict the least recently used ones
+		final Iterator<Map.Entry<String, String>> it = memoryMap.entrySet().iterator();
+		while(totalChars > MAX_CHARS && it.hasNext()) {
+			final Map.Entry<String, String> entry = it.next();
+			if(entry.getKey().equals(key)) continue;
+			totalChars -= entry.getValue().length();
+			it.remove();
+		}
+	}
+
+	private File getDiskDir() {
+		return new File(Utilities.ROOTDIR + Utilities.CACHEPATH + Utilities.HTMLCACHE);
+	}
+
+	private synchronized String getStylesheetHash() {
+		if(stylesheetHash == null) {
+			try(final InputStream in = HtmlCache.class.getResourceAsStream(Utilities.CSCD_XSL)) {
+				stylesheetHash = Utilities.MD5Sum(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+			} catch(IOException e) {
+				System.err.println(e);
+				stylesheetHash = "";
+			}
+		}
+		return stylesheetHash;
+	}
+
+	/**
+	 * Converts a document name to a name safe for the file system,
+	 * extra documents may be in sub-directories.
+	 */
+	private static String getSafeName(final String docName) {
+		return docName.replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+
+	private File getDiskFile(final String docName, final String stamp) {
+		final String hash = Utilities.MD5Sum(stamp + ":" + getStylesheetHash());
+		return new File(getDiskDir(), getSafeName(docName) + "~" + hash + SUFFIX);
+	}
+
+	public boolean hasOnDisk(final String docName, final String stamp) {
+		return !stamp.isEmpty() && getDiskFile(docName, stamp).exists();
+	}
+
+	/**
+	 * Reads an HTML body from the disk cache, or returns null if not found.
+	 */
+	public String getFromDisk(final String docName, final String stamp) {
+		if(stamp.isEmpty()) return null;
+		final File file = getDiskFile(docName, stamp);
+		if(!file.exists()) return null;
+		String result = null;
+		try(final InputStream in = new GZIPInputStream(new FileInputStream(file), 1 << 16)) {
+			result = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+			// the time of use decides what is pruned first
+			file.setLastModified(System.currentTimeMillis());
+		} catch(IOException e) {
+			System.err.println(e);
+			file.delete();
+		}
+		return result;
+	}
+
+	/**
+	 * Writes an HTML body to the disk cache in background, the caller may be the FX thread.
+	 */
+	public void putToDiskLater(final String docName, final String stamp, final String html) {
+		diskWriter.execute(() -> putToDisk(docName, stamp, html));
+	}
+
+	/**
+	 * Writes an HTML body to the disk cache, replacing the outdated ones
+	 * of the same document. The file is written under a temporary name first.
+	 */
+	public void putToDisk(final String docName, final String stamp, final String html) {
+		if(stamp.isEmpty()) return;
+		final File dir = getDiskDir();
+		if(!dir.exists() && !dir.mkdirs()) return;
+		final File file = getDiskFile(docName, stamp);
+		final String prefix = getSafeName(docName) + "~";
+		final File[] oldFiles = dir.listFiles((d, name) -> name.startsWith(prefix) && name.endsWith(SUFFIX));
+		if(oldFiles != null) {
+			for(final File f : oldFiles) {
+				if(!f.equals(file))
+					f.delete();
+			}
+		}
+		try {
+			final File temp = File.createTempFile(prefix, ".tmp", dir);
+			try(final OutputStream out = new GZIPOutputStream(new FileOutputStream(temp), 1 << 16)) {
+				out.write(html.getBytes(StandardCharsets.UTF_8));
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+		pruneDisk(file);
+	}
+
+	/**
+	 * Removes the least recently used files of the disk cache
+	 * until their total size is within the limit. The file just written is kept.
+	 */
+	private synchronized void pruneDisk(final File keep) {
+		final File[] files = getDiskDir().listFiles((d, name) -> name.endsWith(SUFFIX));
+		if(files == null) return;
+		long totalBytes = 0;
+		for(final File f : files)
+			totalBytes += f.length();
+		if(totalBytes <= MAX_DISK_BYTES) return;
+		// the times are taken once, a file may be read meanwhile
+		final Map<File, Long> timeMap = new HashMap<>();
+		for(final File f : files)
+			timeMap.put(f, f.lastModified());
+		Arrays.sort(files, Comparator.comparingLong(timeMap::get));
+		for(final File f : files) {
+			if(totalBytes <= MAX_DISK_BYTES) break;
+			if(f.equals(keep)) continue;
+			final long len = f.length();
+			if(f.delete())
+				totalBytes -= len;
+		}
+	}
+
+	private synchronized void loadOpenCounts() {
+		if(openCountLoaded) return;
+		final File file = new File(getDiskDir(), OPENCOUNT_FILE);
+		if(file.exists()) {
+			try(final InputStream in = new FileInputStream(file)) {
+				openCountProps.load(in);
+			} catch(IOException e) {
+				System.err.println(e);
+			}
+		}
+		openCountLoaded = true;
+	}
+
+	/**
+	 * Records that a collection document is opened by the user.
+	 */
+	public synchronized void recordOpen(final String docName) {
+		loadOpenCounts();
+		int count = 0;
+		try {
+			count = Integer.parseInt(openCountProps.getProperty(docName, "0"));
+		} catch(NumberFormatException e) {
+			System.err.println(e);
+		}
+		openCountProps.setProperty(docName, "" + (count + 1));
+	}
+
+	public synchronized void saveOpenCounts() {
+		if(!openCountLoaded) return;
+		final File dir = getDiskDir();
+		if(!dir.exists()) return;
+		try(final OutputStream out = new FileOutputStream(new File(dir, OPENCOUNT_FILE))) {
+			openCountProps.store(out, "Document open counts");
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+	}
+
+	/**
+	 * Returns the names of the most opened collection documents, most opened first.
+	 */
+	public synchronized List<String> getMostOpened(final int max) {
+		loadOpenCounts();
+		final Map<String, Integer> countMap = new HashMap<>();
+		for(final String name : openCountProps.stringPropertyNames()) {
+			try {
+				countMap.put(name, Integer.parseInt(openCountProps.getProperty(name)));
+			} catch(NumberFormatException e) {
+				System.err.println(e);
+			}
+		}
+		return countMap.entrySet().stream()
+						.sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+						.limit(max)
+						.map(Map.Entry::getKey)
+						.collect(Collectors.toList());
+	}
+
+	/**
+	 * Starts a low-priority background thread rendering the most opened documents
+	 * that are not yet in the disk cache. Only the disk cache is filled,
+	 * the memory cache is left to the documents actually opened.
+	 */
+	public void startWarming() {
+		final Thread warmer = new Thread(() -> {
+			for(final String docName : getMostOpened(WARM_MAX)) {
+				final String stamp = CorpusStore.INSTANCE.getEntryStamp(docName);
+				if(stamp.isEmpty() || hasOnDisk(docName, stamp)) continue;
+				final String html = Utilities.transformXML(docName, true);
+				if(html != null)
+					putToDisk(docName, stamp, html);
+			}
+		}, "html-cache-warmer");
+		warmer.setDaemon(true);
+		warmer.setPriority(Thread.MIN_PRIORITY);
+		warmer.start();
+	}
+
+	/**
+	 * Returns the size and the hit rate of the memory cache, shown in the about dialog.
+	 */
+	public synchronized String getMetrics() {
+		return String.format("Cached: %,d (%,d chars) | Hits: %,d | Misses: %,d",
+							memoryMap.size(), totalChars, hitCount, missCount);
+	}
+}
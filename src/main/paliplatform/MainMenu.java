@@ -23,7 +23,11 @@ import paliplatform.toctree.*;
 import paliplatform.viewer.*;
 import paliplatform.grammar.*;
 
+import java.util.Optional;
+
+import javafx.concurrent.Task;
 import javafx.scene.control.*;
+import javafx.scene.control.Alert.AlertType;
 import javafx.scene.input.KeyCombination;
 import javafx.scene.input.KeyCodeCombination;
 import javafx.scene.input.KeyCode;
@@ -92,8 +96,11 @@ class MainMenu extends MenuBar {
 		final MenuItem sentManMenuItem = new MenuItem("Sentence _Manager", new TextIcon("briefcase", TextIcon.IconSet.AWESOME));
 		sentManMenuItem.setMnemonicParsing(true);
 		sentManMenuItem.setOnAction(actionEvent -> SentenceManager.INSTANCE.display());
+		final MenuItem packMenuItem = new MenuItem("Build corpus _pack", new TextIcon("box-archive", TextIcon.IconSet.AWESOME));
+		packMenuItem.setMnemonicParsing(true);
+		packMenuItem.setOnAction(actionEvent -> buildCorpusPack());
 		collectionMenu.getItems().addAll(tocMenuItem, bookmarksMenuItem, docFinderMenuItem, luceneMenuItem, listerMenuItem, tokenMenuItem, 
-										new SeparatorMenuItem(), readerMenuItem, sentManMenuItem);
+										new SeparatorMenuItem(), readerMenuItem, sentManMenuItem, new SeparatorMenuItem(), packMenuItem);
 				
 		// Grammar
 		final Menu grammarMenu = new Menu("_Grammar");
@@ -151,4 +158,25 @@ class MainMenu extends MenuBar {
 						
 		getMenus().addAll(fileMenu, collectionMenu, grammarMenu, optionsMenu, helpMenu);
 	}
+
+	private void buildCorpusPack() {
+		final String message = "The collection will be unpacked into a single file\n" +
+								"for faster reading (several hundred MB of disk space).\nProceed to continue.";
+		final ConfirmAlert proceedAlert = new ConfirmAlert(PaliPlatform.stage, ConfirmAlert.ConfirmType.PROCEED, message);
+		final Optional<ButtonType> result = proceedAlert.showAndWait();
+		if(result.isEmpty() || result.get() != proceedAlert.getConfirmButtonType())
+			return;
+		final Task<Boolean> packTask = CorpusPack.createBuildTask();
+		packTask.setOnSucceeded(event -> {
+			final Alert alert = new Alert(AlertType.INFORMATION);
+			alert.initOwner(PaliPlatform.stage);
+			alert.setHeaderText(null);
+			alert.setContentText(packTask.getValue() && CorpusStore.INSTANCE.isPackInUse()
+								? "The corpus pack has been built."
+								: "The corpus pack cannot be built.");
+			alert.showAndWait();
+		});
+		packTask.setOnFailed(event -> System.err.println(packTask.getException()));
+		PaliPlatform.threadPool.submit(packTask);
+	}
 }
@@ -0,0 +1,103 @@
+/*
+ * PackedArrays.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * The reading and writing of primitive arrays in the binary index and cache files.
+ * An array is stored as its raw big-endian values, without its length,
+ * so the caller writes the lengths in the header and reads them back first.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+public final class PackedArrays {
+	private PackedArrays() {
+	}
+
+	public static void writeChars(final DataOutput out, final char[] arr) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(arr.length * Character.BYTES);
+		buffer.asCharBuffer().put(arr);
+		out.write(buffer.array());
+	}
+
+	public static void writeInts(final DataOutput out, final int[] arr) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(arr.length * Integer.BYTES);
+		buffer.asIntBuffer().put(arr);
+		out.write(buffer.array());
+	}
+
+	public static void writeLongs(final DataOutput out, final long[] arr) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(arr.length * Long.BYTES);
+		buffer.asLongBuffer().put(arr);
+		out.write(buffer.array());
+	}
+
+	public static char[] readChars(final DataInput in, final int count) throws IOException {
+		final char[] result = new char[count];
+		ByteBuffer.wrap(readBytes(in, count * Character.BYTES)).asCharBuffer().get(result);
+		return result;
+	}
+
+	public static int[] readInts(final DataInput in, final int count) throws IOException {
+		final int[] result = new int[count];
+		ByteBuffer.wrap(readBytes(in, count * Integer.BYTES)).asIntBuffer().get(result);
+		return result;
+	}
+
+	public static long[] readLongs(final DataInput in, final int count) throws IOException {
+		final long[] result = new long[count];
+		ByteBuffer.wrap(readBytes(in, count * Long.BYTES)).asLongBuffer().get(result);
+		return result;
+	}
+
+	private static byte[] readBytes(final DataInput in, final int len) throws IOException {
+		final byte[] result = new byte[len];
+		in.readFully(result);
+		return result;
+	}
+
+	/**
+	 * Reads chars from the current position of a buffer (e.g., a mapped file),
+	 * then moves the position past them.
+	 */
+	public static char[] getChars(final ByteBuffer buffer, final int count) {
+		final char[] result = new char[count];
+		buffer.asCharBuffer().get(result);
+		buffer.position(buffer.position() + count * Character.BYTES);
+		return result;
+	}
+
+	public static int[] getInts(final ByteBuffer buffer, final int count) {
+		final int[] result = new int[count];
+		buffer.asIntBuffer().get(result);
+		buffer.position(buffer.position() + count * Integer.BYTES);
+		return result;
+	}
+
+	public static long[] getLongs(final ByteBuffer buffer, final int count) {
+		final long[] result = new long[count];
+		buffer.asLongBuffer().get(result);
+		buffer.position(buffer.position() + count * Long.BYTES);
+		return result;
+	}
+}
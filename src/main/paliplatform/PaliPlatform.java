@@ -128,6 +128,9 @@ final public class PaliPlatform extends Application {
 		final Path indexPath = Path.of(Utilities.ROOTDIR + Utilities.INDEXPATH + Utilities.INDEXMAIN);
 		if(Files.notExists(indexPath))
 			Files.createDirectories(indexPath);
+		final Path htmlCachePath = Path.of(Utilities.ROOTDIR + Utilities.CACHEPATH + Utilities.HTMLCACHE);
+		if(Files.notExists(htmlCachePath))
+			Files.createDirectories(htmlCachePath);
 		// create H2 db persistent connection
 		Utilities.dbConn = DriverManager.getConnection(Utilities.DB_URL, "sa", "");
 		Utilities.dbConn.setAutoCommit(true);
@@ -290,6 +293,9 @@ final public class PaliPlatform extends Application {
 		});
         
         stage.show();
+
+		// pre-render the most opened documents in background
+		HtmlCache.INSTANCE.startWarming();
     }
     
     @Override
@@ -303,6 +309,9 @@ final public class PaliPlatform extends Application {
 			System.err.println(e);
 		}
 		threadPool.shutdown();
+		HtmlCache.INSTANCE.saveOpenCounts();
+		CorpusStore.INSTANCE.close();
+		SearcherRegistry.INSTANCE.closeAll();
     }
     
     static void refreshTheme() {
@@ -590,6 +599,8 @@ final public class PaliPlatform extends Application {
 	
     static void about() {
 		About.INSTANCE.setTextInfo(releaseNotes);
+		About.INSTANCE.setRuntimeInfo("Collection: " + CorpusStore.INSTANCE.getMetrics() +
+										"\nHTML cache: " + HtmlCache.INSTANCE.getMetrics());
 		About.INSTANCE.showAndWait();
 	}
 	
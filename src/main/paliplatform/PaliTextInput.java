@@ -23,14 +23,17 @@ import java.util.*;
 import java.util.function.*;
 
 import javafx.scene.control.*;
+import javafx.geometry.Side;
 import javafx.scene.input.*;
 import javafx.collections.*;
 import javafx.beans.property.SimpleBooleanProperty;
 
 /** 
  * This is a general Pali text input.
+ * If a term suggester is set, the completions of the last word typed are shown
+ * in a popup menu below the input.
  * @author J.R. Bhaddacak
- * @version 2.0
+ * @version 2.1
  * @since 2.0
  */
 public class PaliTextInput {
@@ -43,6 +46,7 @@ public class PaliTextInput {
 		}
 	}
 	private static final String validMeterGroup = "124lgnsjbmNSJYBRTML";
+	private static final int MAX_SUGGESTIONS = 10;
 	private TextInputControl input;
 	private InputMethod inputMethod;
 	private InputType inputType;
@@ -56,6 +60,9 @@ public class PaliTextInput {
 	private TextFormatter<String> textFormatter;
 	private final SimpleBooleanProperty isChanged = new SimpleBooleanProperty(false);
 	private int limit = 0; // 0 means no limit
+	private Supplier<TermSuggester> suggesterSupplier = null;
+	private ContextMenu suggestMenu = null;
+	private boolean suggestSuspended = false;
 	
 	public PaliTextInput(final InputType inputType) {
 		this.inputType = inputType;
@@ -167,6 +174,54 @@ public class PaliTextInput {
 	public void setLimit(final int num) {
 		limit = num;
 	}
+
+	/**
+	 * Sets where the term suggester is taken from, it may give null if not ready.
+	 */
+	public void setSuggester(final Supplier<TermSuggester> supplier) {
+		suggesterSupplier = supplier;
+		if(suggestMenu != null) return;
+		suggestMenu = new ContextMenu();
+		input.textProperty().addListener((obs, oldValue, newValue) -> showSuggestions(newValue));
+		input.focusedProperty().addListener((obs, oldValue, newValue) -> {
+			if(!newValue)
+				suggestMenu.hide();
+		});
+	}
+
+	private void showSuggestions(final String text) {
+		// only while typing, not when the text is set by the program
+		if(suggestSuspended || !input.isFocused() || text == null) {
+			suggestMenu.hide();
+			return;
+		}
+		final TermSuggester suggester = suggesterSupplier.get();
+		int start = text.length();
+		while(start > 0 && Character.isLetter(text.codePointBefore(start)))
+			start = text.offsetByCodePoints(start, -1);
+		final String word = Utilities.replaceOldNiggahitaWithNew(text.substring(start).toLowerCase());
+		final List<String> suggestions = suggester == null ? Collections.emptyList() : suggester.suggest(word, MAX_SUGGESTIONS);
+		if(suggestions.isEmpty() || (suggestions.size() == 1 && suggestions.get(0).equals(word))) {
+			suggestMenu.hide();
+			return;
+		}
+		final int wordStart = start;
+		final List<MenuItem> items = new ArrayList<>();
+		for(final String term : suggestions) {
+			final MenuItem item = new MenuItem(term);
+			item.setMnemonicParsing(false);
+			item.setOnAction(actionEvent -> {
+				suggestSuspended = true;
+				input.replaceText(Math.min(wordStart, input.getLength()), input.getLength(), term);
+				input.positionCaret(input.getLength());
+				suggestSuspended = false;
+			});
+			items.add(item);
+		}
+		suggestMenu.getItems().setAll(items);
+		if(!suggestMenu.isShowing())
+			suggestMenu.show(input, Side.BOTTOM, 0, 0);
+	}
 	
 	public void requestFocus() {
 		input.requestFocus();
@@ -0,0 +1,212 @@
+/*
+ * TermSuggester.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.io.*;
+import java.sql.*;
+
+/**
+ * The prefix completer of terms, used by PaliTextInput while typing. The terms are
+ * sorted and packed in a char array with their weights, so the terms of a prefix
+ * are found by binary search, and the heaviest ones are picked by a bounded heap.
+ * The corpus suggester is made from CSCDTERMS weighted by the corpus frequency;
+ * LuceneFinder also makes one from the terms of its index when building.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+public class TermSuggester {
+	public static final int MIN_PREFIX = 2;
+	private static final int MAGIC = 0x50505347; // "PPSG"
+	private static final int VERSION = 1;
+	private static final AtomicBoolean corpusLoading = new AtomicBoolean(false);
+	private static volatile TermSuggester corpusSuggester = null;
+	private final char[] termChars;
+	private final int[] termStarts;
+	private final int[] weights;
+
+	private TermSuggester(final char[] termChars, final int[] termStarts, final int[] weights) {
+		this.termChars = termChars;
+		this.termStarts = termStarts;
+		this.weights = weights;
+	}
+
+	/**
+	 * Creates a suggester from terms and their weights, e.g., frequencies.
+	 */
+	public static TermSuggester create(final Map<String, Integer> weightMap) {
+		final List<String> terms = new ArrayList<>(weightMap.keySet());
+		Collections.sort(terms);
+		final StringBuilder chars = new StringBuilder();
+		final int[] termStarts = new int[terms.size() + 1];
+		final int[] weights = new int[terms.size()];
+		for(int i = 0; i < terms.size(); i++) {
+			termStarts[i] = chars.length();
+			chars.append(terms.get(i));
+			weights[i] = weightMap.get(terms.get(i));
+		}
+		termStarts[terms.size()] = chars.length();
+		final char[] termChars = new char[chars.length()];
+		chars.getChars(0, chars.length(), termChars, 0);
+		return new TermSuggester(termChars, termStarts, weights);
+	}
+
+	/**
+	 * Returns the corpus suggester, or null if it is not ready yet.
+	 * The first call starts loading it in the background.
+	 */
+	public static TermSuggester getCorpusSuggester() {
+		if(corpusSuggester == null && corpusLoading.compareAndSet(false, true)) {
+			PaliPlatform.threadPool.submit(() -> {
+				prepareCorpusSuggester();
+				corpusLoading.set(false);
+			});
+		}
+		return corpusSuggester;
+	}
+
+	/**
+	 * Loads the corpus suggester from CSCDTERMS and waits for it.
+	 * Null is returned if the database is not available.
+	 */
+	public static synchronized TermSuggester prepareCorpusSuggester() {
+		if(corpusSuggester != null || Utilities.dbConn == null)
+			return corpusSuggester;
+		final Map<String, Integer> weightMap = new HashMap<>();
+		try {
+			final Statement stmt = Utilities.dbConn.createStatement();
+			final ResultSet rs = stmt.executeQuery("SELECT TERM,FREQUENCY FROM CSCDTERMS;");
+			while(rs.next())
+				weightMap.put(rs.getString(1), rs.getInt(2));
+			rs.close();
+			stmt.close();
+		} catch(SQLException e) {
+			System.err.println(e);
+			return null;
+		}
+		corpusSuggester = create(weightMap);
+		return corpusSuggester;
+	}
+
+	public int size() {
+		return weights.length;
+	}
+
+	/**
+	 * Returns the weight of a term, or 0 if the term is not found.
+	 */
+	public int getWeight(final String term) {
+		final int index = lowerBound(term);
+		return index < weights.length && compare(index, term, false) == 0 ? weights[index] : 0;
+	}
+
+	/**
+	 * Returns at most max terms starting with the prefix, the heaviest first.
+	 */
+	public List<String> suggest(final String prefix, final int max) {
+		if(prefix.length() < MIN_PREFIX || max <= 0)
+			return Collections.emptyList();
+		// the lightest of the best ones is on top, to be replaced
+		final PriorityQueue<Integer> heap = new PriorityQueue<>(max + 1, (x, y) -> Integer.compare(weights[x], weights[y]));
+		for(int i = lowerBound(prefix); i < weights.length && compare(i, prefix, true) == 0; i++) {
+			if(heap.size() < max) {
+				heap.add(i);
+			} else if(weights[i] > weights[heap.peek()]) {
+				heap.poll();
+				heap.add(i);
+			}
+		}
+		final List<Integer> indexList = new ArrayList<>(heap);
+		indexList.sort((x, y) -> weights[x] == weights[y] ? Integer.compare(x, y) : Integer.compare(weights[y], weights[x]));
+		final List<String> result = new ArrayList<>(indexList.size());
+		for(final int i : indexList)
+			result.add(new String(termChars, termStarts[i], termStarts[i + 1] - termStarts[i]));
+		return result;
+	}
+
+	/**
+	 * Compares term i with a string, or only with its length if asPrefix.
+	 */
+	private int compare(final int index, final String str, final boolean asPrefix) {
+		final int start = termStarts[index];
+		final int len = termStarts[index + 1] - start;
+		final int min = Math.min(len, str.length());
+		for(int i = 0; i < min; i++) {
+			final int diff = termChars[start + i] - str.charAt(i);
+			if(diff != 0)
+				return diff;
+		}
+		return asPrefix && len >= str.length() ? 0 : len - str.length();
+	}
+
+	/**
+	 * Returns the index of the first term not less than the string.
+	 */
+	private int lowerBound(final String str) {
+		int low = 0;
+		int high = weights.length;
+		while(low < high) {
+			final int mid = (low + high) >>> 1;
+			if(compare(mid, str, false) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Reads a suggester from a file, or returns null if it is not readable.
+	 */
+	public static TermSuggester load(final File file) {
+		if(!file.exists())
+			return null;
+		TermSuggester result = null;
+		try(final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			final int termCount = in.readInt();
+			final int charCount = in.readInt();
+			final char[] termChars = PackedArrays.readChars(in, charCount);
+			final int[] termStarts = PackedArrays.readInts(in, termCount + 1);
+			final int[] weights = PackedArrays.readInts(in, termCount);
+			result = new TermSuggester(termChars, termStarts, weights);
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+		return result;
+	}
+
+	public void save(final File file) {
+		try(final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(weights.length);
+			out.writeInt(termChars.length);
+			PackedArrays.writeChars(out, termChars);
+			PackedArrays.writeInts(out, termStarts);
+			PackedArrays.writeInts(out, weights);
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+	}
+}
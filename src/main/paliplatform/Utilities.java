@@ -27,23 +27,18 @@ import java.util.stream.*;
 import java.io.*;
 import java.nio.file.*;
 import java.nio.charset.StandardCharsets;
-import java.util.zip.*;
 import java.sql.*;
 import java.security.*;
 import java.awt.image.BufferedImage;
 
 import javax.imageio.ImageIO;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.parsers.ParserConfigurationException;
-import org.xml.sax.SAXException;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -84,6 +79,12 @@ final public class Utilities {
 	public static final String SENTENCESPATH = DATAPATH + "sentences" + File.separator;
 	public static final String SENTENCESMAIN = "main" + File.separator;
 	public static final String INDEXPATH = DATAPATH + "index" + File.separator;
+	public static final String CACHEPATH = DATAPATH + "cache" + File.separator;
+	public static final String HTMLCACHE = "html" + File.separator;
+	public static final String TERMCACHE = "terms" + File.separator;
+	public static final String TRIGRAM_INDEX = "trigram.idx";
+	public static final String LEMMA_INDEX = "lemma.idx";
+	public static final String SUGGEST_INDEX = "suggest.idx";
 	public static final String INDEXMAIN = "main" + File.separator;
 	public static final String EXFONTPATH = "fonts" + File.separator;
 	public static final String CSCD_XSL = CSSDIR + "cscd.xsl";
@@ -97,6 +98,8 @@ final public class Utilities {
 	public static final String CSCD_JS = JSDIR + "cscd-viewer.js";
 	public static final String CSCD_ZIP = "romn_utf8.zip";
 	public static final String CSCD_DIR = "romn_utf8/";
+	public static final String CSCD_PACK = "romn_utf8.pack";
+	public static final String CSCD_PACK_INDEX = "romn_utf8.pidx";
 	public static final String CSCD_FILES = TXTDIR + "cscdfiles.txt";
 	public static final String CPED_TERMS = TXTDIR + "cped-terms.txt";
 	public static final String DECLINABLES = TXTDIR + "declinables.txt";
@@ -151,6 +154,7 @@ final public class Utilities {
 	public static final Map<Character, List<String>> texConvMap = new HashMap<>();
 	public static final Set<String> stopwords = new HashSet<>();
 	public static File customDictFile;
+	private static Templates cscdTemplates = null;
 	public static File sandhiFile;
 	public static File stopwordsFile;
 	public static double defBaseFontSize;
@@ -451,9 +455,10 @@ final public class Utilities {
 				}
 			}
 		}		
-		final String jsScript = "<script type='text/javascript'>" + scriptBody.toString() + "</script>";
-		final StringBuilder htmlText = new StringBuilder(body);
-		htmlText.insert(0, "<!doctype html><html><head><meta charset='utf-8'>"+jsScript+"</head>");
+		final StringBuilder htmlText = new StringBuilder(body.length() + scriptBody.length() + 128);
+		htmlText.append("<!doctype html><html><head><meta charset='utf-8'>");
+		htmlText.append("<script type='text/javascript'>").append(scriptBody).append("</script></head>");
+		htmlText.append(body);
 		htmlText.append("</html>");
 		return htmlText.toString();
 	}
@@ -470,41 +475,53 @@ final public class Utilities {
 	 * Reads an XML file, either from the collection zip or an individual file,
 	 * then, transforms the content into HTML by XSLT. According to the stylesheet given,
 	 * the output is wrapped with tag body, hence, not complete HTML.
+	 * The output is taken from the memory cache or the disk cache, if available.
 	 */
 	public static String readXML(final String matter, final boolean inArchive) {
-		org.w3c.dom.Document domDoc = null;
-		final DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
+		// extra documents can be changed, so their key includes the file's time and size
+		final File file = inArchive ? null : new File(EXTRAPATH + matter);
+		if(file != null && !file.exists()) return "";
+		final String stamp = inArchive ? CorpusStore.INSTANCE.getEntryStamp(matter) : file.lastModified() + "-" + file.length();
+		final String key = inArchive ? matter : file.getPath() + ":" + stamp;
+		final String cached = HtmlCache.INSTANCE.get(key);
+		if(cached != null) return cached;
+		String output = HtmlCache.INSTANCE.getFromDisk(matter, stamp);
+		if(output == null) {
+			output = transformXML(matter, inArchive);
+			if(output == null) return "";
+			HtmlCache.INSTANCE.putToDiskLater(matter, stamp, output);
+		}
+		HtmlCache.INSTANCE.put(key, output);
+		return output;
+	}
+
+	/**
+	 * Transforms an XML file into HTML body, without using the caches.
+	 * Null is returned if the transformation fails.
+	 */
+	public static String transformXML(final String matter, final boolean inArchive) {
 		final StringWriter writer = new StringWriter();
+		boolean success = false;
 		try {
-			final DocumentBuilder builder = docFactory.newDocumentBuilder();
+			// stream the XML straight into XSLT, without building DOM
+			final Transformer transformer = getCSCDTemplates().newTransformer();
+			final StreamResult result = new StreamResult(writer);
 			if(inArchive) {
-				final ZipFile zip = new ZipFile(new File(ROOTDIR + COLLPATH + CSCD_ZIP));
-				final ZipEntry entry = zip.getEntry(CSCD_DIR + matter);
-				if(entry != null) {
-					domDoc = builder.parse(zip.getInputStream(entry));
-				} else {
-					zip.close();
-					return "";
+				final InputStream in = CorpusStore.INSTANCE.getInputStream(matter);
+				if(in == null)
+					return null;
+				try(in) {
+					transformer.transform(new StreamSource(in), result);
 				}
-				zip.close();
 			} else {
 				final File file = new File(EXTRAPATH + matter);
-				if(file.exists())
-					domDoc = builder.parse(file);		
+				if(!file.exists())
+					return null;
+				transformer.transform(new StreamSource(file), result);
 			}
-			if(domDoc == null) return "";
-			// read DOM and transform with XSLT
-			final InputStream stylesheet = Utilities.class.getResourceAsStream(CSCD_XSL);
-			final TransformerFactory tFactory = TransformerFactory.newInstance();
-			final StreamSource stylesource = new StreamSource(stylesheet);
-			final Transformer transformer = tFactory.newTransformer(stylesource);
-			// for test
-			//~ transformer.transform(new DOMSource(domDoc), new StreamResult(System.out));
-			final DOMSource source = new DOMSource(domDoc);
-			final StreamResult result = new StreamResult(writer);
-			transformer.transform(source, result);
 			writer.flush();
 			writer.close();
+			success = true;
 		} catch(TransformerConfigurationException tce) {
 			// Error generated by the parser
 			System.err.println("\n** Transformer Factory error");
@@ -525,19 +542,22 @@ final public class Utilities {
 				System.err.println(x);
 			}
 			System.err.println(te);
-		} catch(SAXException sxe) {
-			// Error generated by this application
-			// (or a parser-initialization error)
-			if(sxe.getException() != null) {
-				final Exception x = sxe.getException();
-				System.err.println(x);
-			}
-			System.err.println(sxe);
-		} catch(ParserConfigurationException | IOException e) {
-			// Parser with specified options can't be built
+		} catch(IOException e) {
 			System.err.println(e);
 		}
-		return writer.toString();
+		return success ? writer.toString() : null;
+	}
+
+	/**
+	 * Returns the compiled CSCD stylesheet, which is shared by all transformations.
+	 */
+	private static synchronized Templates getCSCDTemplates() throws TransformerConfigurationException {
+		if(cscdTemplates == null) {
+			final InputStream stylesheet = Utilities.class.getResourceAsStream(CSCD_XSL);
+			final TransformerFactory tFactory = TransformerFactory.newInstance();
+			cscdTemplates = tFactory.newTemplates(new StreamSource(stylesheet));
+		}
+		return cscdTemplates;
 	}
 
 	/**
@@ -548,15 +568,13 @@ final public class Utilities {
 		final String filename = doc.getFileName();
 		try{
 			if(doc.isInArchive()) {
-				final ZipFile zip = new ZipFile(new File(ROOTDIR + COLLPATH + CSCD_ZIP));
-				final ZipEntry entry = zip.getEntry(CSCD_DIR + filename);
-				if(entry != null) {
-					final Scanner in = new Scanner(zip.getInputStream(entry), "UTF-8");
+				final InputStream zin = CorpusStore.INSTANCE.getInputStream(filename);
+				if(zin != null) {
+					final Scanner in = new Scanner(zin, "UTF-8");
 					while(in.hasNextLine())
 						result.append(xmlToText(in.nextLine(), includeNotes, indent));
 					in.close();
 				}
-				zip.close();
 			} else if(doc.isExtra()) {
 				final Scanner in = new Scanner(new FileInputStream(new File(EXTRAPATH + filename)), "UTF-8");
 				while(in.hasNextLine())
@@ -603,10 +621,9 @@ final public class Utilities {
 	public static boolean isCSCDContainsText(final String filename, final String text) {
 		boolean result = false;
 		try{
-			final ZipFile zip = new ZipFile(new File(ROOTDIR + COLLPATH + CSCD_ZIP));
-			final ZipEntry entry = zip.getEntry(CSCD_DIR + filename);
-			if(entry != null) {
-				final Scanner in = new Scanner(zip.getInputStream(entry), "UTF-8");
+			final InputStream zin = CorpusStore.INSTANCE.getInputStream(filename);
+			if(zin != null) {
+				final Scanner in = new Scanner(zin, "UTF-8");
 				while(in.hasNextLine()) {
 					final String line = in.nextLine();
 					if(line.contains(text)) {
@@ -616,7 +633,6 @@ final public class Utilities {
 				}
 				in.close();
 			}
-			zip.close();
 		} catch(IOException e) {
 			System.err.println(e);
 		}
@@ -629,13 +645,12 @@ final public class Utilities {
 	public static List<String> getCSCDFileList(final String text) {
 		final List<String> result = new ArrayList<>();
 		try{
-			final ZipFile zip = new ZipFile(new File(ROOTDIR + COLLPATH + CSCD_ZIP));
-			for(final Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
-				final ZipEntry entry = e.nextElement();
-				final String fname = entry.getName();
-				if(!fname.contains("toc")) {
-					final String name = fname.substring(fname.lastIndexOf(File.separator) + 1);
-					final Scanner in = new Scanner(zip.getInputStream(entry), "UTF-8");
+			for(final String name : CorpusStore.INSTANCE.getFileNames()) {
+				if(!name.contains("toc")) {
+					final InputStream stream = CorpusStore.INSTANCE.getInputStream(name);
+					if(stream == null)
+						continue;
+					final Scanner in = new Scanner(stream, "UTF-8");
 					boolean found = false;
 					while(in.hasNextLine()) {
 						final String line = in.nextLine();
@@ -649,7 +664,6 @@ final public class Utilities {
 						result.add(name);
 				}
 			}
-			zip.close();
 		} catch(IOException e) {
 			System.err.println(e);
 		}
@@ -659,19 +673,9 @@ final public class Utilities {
 
 	public static List<String> getCSCDFileList() {
 		final List<String> result = new ArrayList<>();
-		try{
-			final ZipFile zip = new ZipFile(new File(ROOTDIR + COLLPATH + CSCD_ZIP));
-			for(final Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
-				final ZipEntry entry = e.nextElement();
-				final String fname = entry.getName();
-				if(!fname.contains("toc")) {
-					final String name = fname.substring(fname.lastIndexOf(File.separator) + 1);
-					result.add(name);
-				}
-			}
-			zip.close();
-		} catch(IOException e) {
-			System.err.println(e);
+		for(final String name : CorpusStore.INSTANCE.getFileNames()) {
+			if(!name.contains("toc"))
+				result.add(name);
 		}
 		result.sort(PaliDocument.getFileNameStringComparator());
 		return result;
@@ -930,21 +934,7 @@ final public class Utilities {
 				final Statement stmt = dbConn.createStatement();
 				final ResultSet rs = stmt.executeQuery(query);
 				while(rs.next()) {
-					final String para = rs.getString(2);
-					final String pos = rs.getString(1);
-					if(para == null) {
-						if(isGenericParadigmNeeded(pos))
-							pword.setParadigm("generic");
-					} else {
-						pword.setParadigm(para);
-					}
-					pword.addPosInfo(pos);
-					final boolean forCompounds = rs.getBoolean(3);
-					pword.addForCompounds(forCompounds);
-					final String meaning = rs.getString(4);
-					pword.addMeaning(meaning);
-					final String submean = rs.getString(5);
-					pword.addSubmeaning(submean);
+					addCPEDRecord(pword, rs.getString(1), rs.getString(2), rs.getBoolean(3), rs.getString(4), rs.getString(5));
 				}
 				rs.close();		
 				stmt.close();
@@ -952,6 +942,54 @@ final public class Utilities {
 		} catch(SQLException e) {
 			System.err.println(e);
 		}
+		fixGenericParadigm(pword);
+		return pword;	
+	}
+
+	/**
+	 * Looks up many terms at once, with only one scan of the CPED table.
+	 * Terms not found are not in the result.
+	 */
+	public static Map<String, PaliWord> lookUpCPEDFromDB(final Collection<String> terms) {
+		final Set<String> termSet = new HashSet<>(terms);
+		final Map<String, PaliWord> result = new HashMap<>();
+		final String query = "SELECT TERM,POS,PARADIGM,IN_COMPOUNDS,MEANING,SUBMEANING FROM CPED;";
+		try {
+			if(dbConn != null) {
+				final Statement stmt = dbConn.createStatement();
+				final ResultSet rs = stmt.executeQuery(query);
+				while(rs.next()) {
+					final String term = rs.getString(1);
+					if(!termSet.contains(term))
+						continue;
+					final PaliWord pword = result.computeIfAbsent(term, PaliWord::new);
+					addCPEDRecord(pword, rs.getString(2), rs.getString(3), rs.getBoolean(4), rs.getString(5), rs.getString(6));
+				}
+				rs.close();		
+				stmt.close();
+			}
+		} catch(SQLException e) {
+			System.err.println(e);
+		}
+		result.values().forEach(Utilities::fixGenericParadigm);
+		return result;
+	}
+
+	private static void addCPEDRecord(final PaliWord pword, final String pos, final String para, final boolean forCompounds,
+									final String meaning, final String submean) {
+		if(para == null) {
+			if(isGenericParadigmNeeded(pos))
+				pword.setParadigm("generic");
+		} else {
+			pword.setParadigm(para);
+		}
+		pword.addPosInfo(pos);
+		pword.addForCompounds(forCompounds);
+		pword.addMeaning(meaning);
+		pword.addSubmeaning(submean);
+	}
+
+	private static void fixGenericParadigm(final PaliWord pword) {
 		// dealing with special cases
 		final List<String> prdm = pword.getParadigm();
 		if(prdm.size() == 1 && prdm.get(0).equals("generic")) {
@@ -964,7 +1002,6 @@ final public class Utilities {
 				pword.setParadigm("kattu");
 			}
 		}
-		return pword;	
 	}
 
 	private static boolean isGenericParadigmNeeded(final String pos) {
@@ -121,6 +121,7 @@ public class DictWin extends BorderPane {
 			}
 		});
 		searchTextField = (TextField)searchInput.getInput();
+		searchInput.setSuggester(TermSuggester::getCorpusSuggester);
 		searchTextField.textProperty().addListener((obs, oldValue, newValue) -> {
 			if(!useWildcards.get() && !inMeaning.get()) {
 				// immediate (incremental) search
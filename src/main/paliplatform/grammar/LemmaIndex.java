@@ -0,0 +1,338 @@
+/*
+ * LemmaIndex.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform.grammar;
+
+import paliplatform.*;
+
+import java.util.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The reverse index of inflected forms to their lemmas, used for inflection-insensitive
+ * search in LuceneFinder. The forms are generated by declining the CPED declinables
+ * (with PaliDeclension) and by conjugating the common verbs (with PaliConjugation).
+ * The lemma of a noun is its CPED term, and that of a verb is its first present form,
+ * e.g., gacchati. The forms are sorted and packed in a char array, and the index
+ * is persisted in the cache directory. This is a singleton.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+public class LemmaIndex {
+	public static final LemmaIndex INSTANCE = new LemmaIndex();
+	private static final int MAGIC = 0x50504C4D; // "PPLM"
+	private static final int VERSION = 1;
+	private static final int MIN_FORM_LENGTH = 2;
+	private static final String DELIM = "|";
+	private volatile Table table = null;
+
+	private LemmaIndex() {
+	}
+
+	private File getIndexFile() {
+		return new File(Utilities.ROOTDIR + Utilities.CACHEPATH + Utilities.LEMMA_INDEX);
+	}
+
+	public boolean isReady() {
+		return table != null;
+	}
+
+	/**
+	 * Makes the index ready, by loading from disk or building a new one.
+	 * Building needs the dictionary database, false is returned if it fails.
+	 */
+	public synchronized boolean prepare() {
+		if(table != null)
+			return true;
+		Utilities.loadDeclinables();
+		final String stamp = VERSION + ":" + getInputHash();
+		Table tab = load(stamp);
+		if(tab == null) {
+			tab = build();
+			if(tab == null)
+				return false;
+			save(tab, stamp);
+		}
+		table = tab;
+		return true;
+	}
+
+	/**
+	 * Returns the hash of what the index is built from, i.e., the declinables,
+	 * the CPED terms, the paradigms, and the common verbs,
+	 * so a changed input makes the index built again.
+	 */
+	private static String getInputHash() {
+		final StringBuilder inputs = new StringBuilder(String.join("\n", Utilities.declinables));
+		for(final String res : new String[] { Utilities.CPED_TERMS, Utilities.PARADIGM_NOUN_LIST,
+											Utilities.PARADIGM_VERB_LIST, Utilities.PALI_COMMON_VERB_LIST }) {
+			try(final InputStream in = PaliPlatform.class.getResourceAsStream(res)) {
+				if(in != null)
+					inputs.append("\n").append(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+			} catch(IOException e) {
+				System.err.println(e);
+			}
+		}
+		return Utilities.MD5Sum(inputs.toString());
+	}
+
+	/**
+	 * Returns the lemmas of a form, or an empty list if the form is not known.
+	 * The form is expected to be lowercase with the new niggahita.
+	 */
+	public List<String> getLemmas(final String form) {
+		final Table tab = table;
+		return tab == null ? Collections.emptyList() : tab.lookUp(form);
+	}
+
+	public int getFormCount() {
+		final Table tab = table;
+		return tab == null ? 0 : tab.formStarts.length - 1;
+	}
+
+	private static String normalize(final String term) {
+		return Utilities.replaceOldNiggahitaWithNew(term.toLowerCase());
+	}
+
+	private static void addForm(final Map<String, String> formMap, final String term, final String lemma) {
+		final String form = normalize(term);
+		if(form.length() < MIN_FORM_LENGTH || !form.chars().allMatch(Character::isLetter))
+			return;
+		formMap.merge(form, lemma, (x, y) -> (DELIM + x + DELIM).contains(DELIM + y + DELIM) ? x : x + DELIM + y);
+	}
+
+	private Table build() {
+		if(Utilities.dbConn == null)
+			return null;
+		if(Utilities.declension == null)
+			Utilities.declension = new PaliDeclension();
+		final Map<String, String> formMap = new HashMap<>(); // form -> lemmas delimited by DELIM
+		// (1) nouns and adjectives
+		for(final PaliWord pword : Utilities.lookUpCPEDFromDB(Utilities.declinables).values()) {
+			final String lemma = normalize(pword.getTerm());
+			addForm(formMap, pword.getTerm(), lemma);
+			for(int i = 0; i < pword.getGender().size(); i++) {
+				Utilities.computeDeclension(pword, i).values().forEach(numMap ->
+					numMap.values().forEach(forms -> forms.forEach(f -> addForm(formMap, f, lemma))));
+			}
+		}
+		// (2) common verbs
+		final PaliConjugation conjugation = new PaliConjugation();
+		try(final Scanner in = new Scanner(PaliPlatform.class.getResourceAsStream(Utilities.PALI_COMMON_VERB_LIST), "UTF-8")) {
+			while(in.hasNextLine()) {
+				final String line = in.nextLine().trim();
+				if(line.isEmpty() || line.charAt(0) == '#')
+					continue;
+				final String[] items = line.split(":");
+				final PaliRoot root = new PaliRoot(Integer.valueOf(items[0]), items[1], items[2]);
+				root.setStemMap(items[3], items[4], items[5]);
+				final List<String> forms = conjugate(conjugation, root);
+				if(forms.isEmpty())
+					continue;
+				final String lemma = normalize(forms.get(0));
+				for(final String f : forms)
+					addForm(formMap, f, lemma);
+			}
+		}
+		return Table.create(formMap);
+	}
+
+	/**
+	 * Returns all finite forms and absolutives of a root, the active present forms first.
+	 */
+	private static List<String> conjugate(final PaliConjugation conjugation, final PaliRoot root) {
+		final List<String> result = new ArrayList<>();
+		for(final PaliConjugation.Voice voice : PaliConjugation.Voice.values()) {
+			final Map<PaliConjugation.TenseMood, List<String>> stemMap = root.getStemMap(voice);
+			final Map<String, Set<String>> paradMap = root.getParadigmMap(voice);
+			if(stemMap == null || paradMap == null)
+				continue;
+			stemMap.forEach((tense, stemList) -> {
+				for(final String stem : stemList) {
+					final Set<String> paradSet = paradMap.get(stem);
+					if(paradSet == null)
+						continue;
+					for(final PaliConjugation.Pada pada : PaliConjugation.Pada.values()) {
+						for(final String p : paradSet) {
+							final VerbParadigm vp = conjugation.getVerbParadigm(p, tense, pada);
+							if(vp == null)
+								continue;
+							for(final PaliConjugation.Person person : PaliConjugation.Person.values()) {
+								for(final PaliConjugation.Number number : PaliConjugation.Number.values()) {
+									for(final String ending : vp.getEndings(person, number))
+										result.addAll(root.withSuffix(stem, ending, 3));
+								}
+							}
+						}
+					}
+				}
+			});
+			final Map<PaliConjugation.DeriPaccaya, List<String>> deriMap = root.getDeriStemMap(voice);
+			if(deriMap != null) {
+				for(final String term : deriMap.getOrDefault(PaliConjugation.DeriPaccaya.TVA, Collections.emptyList())) {
+					result.add(term);
+					if(term.endsWith("tvā"))
+						result.add(term + "na");
+				}
+			}
+		}
+		return result;
+	}
+
+	private Table load(final String stamp) {
+		final File file = getIndexFile();
+		if(!file.exists())
+			return null;
+		Table result = null;
+		try(final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			if(!in.readUTF().equals(stamp))
+				return null;
+			final int lemmaCount = in.readInt();
+			final String[] lemmas = new String[lemmaCount];
+			for(int i = 0; i < lemmaCount; i++)
+				lemmas[i] = in.readUTF();
+			final int formCount = in.readInt();
+			final int charCount = in.readInt();
+			final int idCount = in.readInt();
+			final char[] formChars = PackedArrays.readChars(in, charCount);
+			final int[] formStarts = PackedArrays.readInts(in, formCount + 1);
+			final int[] lemmaStarts = PackedArrays.readInts(in, formCount + 1);
+			final int[] lemmaIds = PackedArrays.readInts(in, idCount);
+			result = new Table(lemmas, formChars, formStarts, lemmaStarts, lemmaIds);
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+		return result;
+	}
+
+	private void save(final Table tab, final String stamp) {
+		final File file = getIndexFile();
+		final File dir = file.getParentFile();
+		if(!dir.exists() && !dir.mkdirs())
+			return;
+		try(final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(stamp);
+			out.writeInt(tab.lemmas.length);
+			for(final String lemma : tab.lemmas)
+				out.writeUTF(lemma);
+			out.writeInt(tab.formStarts.length - 1);
+			out.writeInt(tab.formChars.length);
+			out.writeInt(tab.lemmaIds.length);
+			PackedArrays.writeChars(out, tab.formChars);
+			PackedArrays.writeInts(out, tab.formStarts);
+			PackedArrays.writeInts(out, tab.lemmaStarts);
+			PackedArrays.writeInts(out, tab.lemmaIds);
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+	}
+
+	public synchronized void clear() {
+		table = null;
+	}
+
+	// inner classes
+	/**
+	 * The immutable content of the index. Form i is formChars[formStarts[i]..formStarts[i+1]),
+	 * and its lemmas are lemmas[lemmaIds[j]] for j in [lemmaStarts[i], lemmaStarts[i+1]).
+	 */
+	private static class Table {
+		private final String[] lemmas;
+		private final char[] formChars;
+		private final int[] formStarts;
+		private final int[] lemmaStarts;
+		private final int[] lemmaIds;
+
+		private Table(final String[] lemmas, final char[] formChars, final int[] formStarts,
+					final int[] lemmaStarts, final int[] lemmaIds) {
+			this.lemmas = lemmas;
+			this.formChars = formChars;
+			this.formStarts = formStarts;
+			this.lemmaStarts = lemmaStarts;
+			this.lemmaIds = lemmaIds;
+		}
+
+		private static Table create(final Map<String, String> formMap) {
+			final List<String> forms = new ArrayList<>(formMap.keySet());
+			Collections.sort(forms);
+			final Map<String, Integer> lemmaIdMap = new HashMap<>();
+			final List<String> lemmaList = new ArrayList<>();
+			final StringBuilder chars = new StringBuilder();
+			final int[] formStarts = new int[forms.size() + 1];
+			final int[] lemmaStarts = new int[forms.size() + 1];
+			final List<Integer> idList = new ArrayList<>();
+			for(int i = 0; i < forms.size(); i++) {
+				final String form = forms.get(i);
+				formStarts[i] = chars.length();
+				lemmaStarts[i] = idList.size();
+				chars.append(form);
+				for(final String lemma : formMap.get(form).split("\\" + DELIM)) {
+					idList.add(lemmaIdMap.computeIfAbsent(lemma, x -> {
+						lemmaList.add(x);
+						return lemmaList.size() - 1;
+					}));
+				}
+			}
+			formStarts[forms.size()] = chars.length();
+			lemmaStarts[forms.size()] = idList.size();
+			final char[] formChars = new char[chars.length()];
+			chars.getChars(0, chars.length(), formChars, 0);
+			final int[] lemmaIds = idList.stream().mapToInt(Integer::intValue).toArray();
+			return new Table(lemmaList.toArray(new String[0]), formChars, formStarts, lemmaStarts, lemmaIds);
+		}
+
+		private int compare(final int index, final String form) {
+			final int start = formStarts[index];
+			final int len = formStarts[index + 1] - start;
+			final int min = Math.min(len, form.length());
+			for(int i = 0; i < min; i++) {
+				final int diff = formChars[start + i] - form.charAt(i);
+				if(diff != 0)
+					return diff;
+			}
+			return len - form.length();
+		}
+
+		private List<String> lookUp(final String form) {
+			int low = 0;
+			int high = formStarts.length - 2;
+			while(low <= high) {
+				final int mid = (low + high) >>> 1;
+				final int cmp = compare(mid, form);
+				if(cmp < 0) {
+					low = mid + 1;
+				} else if(cmp > 0) {
+					high = mid - 1;
+				} else {
+					final List<String> result = new ArrayList<>(lemmaStarts[mid + 1] - lemmaStarts[mid]);
+					for(int j = lemmaStarts[mid]; j < lemmaStarts[mid + 1]; j++)
+						result.add(lemmas[lemmaIds[j]]);
+					return result;
+				}
+			}
+			return Collections.emptyList();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * CSCDParagraphSAXHandler.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform.toctree;
+
+import java.util.*;
+import org.xml.sax.*;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * This handler splits a CSCD document into paragraphs (p with rend), used for
+ * paragraph-level indexing in LuceneFinder. Each paragraph has the text of its own field,
+ * with boldface and notes inside it, and the paragraph number in effect.
+ * A paragraph without its own number takes the number of the previous one.
+ * All text inside a note goes to the note field, whatever tags are nested in it.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+class CSCDParagraphSAXHandler extends DefaultHandler {
+	private final List<Paragraph> paraList;
+	private final Stack<String> openedTags = new Stack<>();
+	private final StringBuilder paraNumBuffer = new StringBuilder();
+	private final StringBuilder boldBuffer = new StringBuilder();
+	private final StringBuilder noteBuffer = new StringBuilder();
+	private Paragraph currPara = null;
+	private int noteDepth = 0;
+	private String currParaNum = "";
+
+	public CSCDParagraphSAXHandler(final List<Paragraph> paraList) {
+		this.paraList = paraList;
+	}
+
+	@Override
+	public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) throws SAXException {
+		final String rend = attributes.getValue("rend");
+		if(qName.equals("p")) {
+			if(rend != null)
+				currPara = new Paragraph(rend, currParaNum);
+		} else if(currPara == null) {
+			return;
+		} else if(qName.equals("hi")) {
+			if(noteDepth > 0) {
+				openedTags.push("hi");
+			} else if("paranum".equals(rend)) {
+				openedTags.push("paranum");
+				paraNumBuffer.setLength(0);
+			} else if("bold".equals(rend)) {
+				openedTags.push("bold");
+				boldBuffer.setLength(0);
+			} else {
+				openedTags.push("hi");
+			}
+		} else if(qName.equals("note")) {
+			openedTags.push("note");
+			if(noteDepth++ == 0)
+				noteBuffer.setLength(0);
+		}
+	}
+
+	@Override
+	public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+		if(currPara == null) return;
+		if(qName.equals("p")) {
+			if(!currPara.isEmpty())
+				paraList.add(currPara);
+			currPara = null;
+			openedTags.clear();
+			noteDepth = 0;
+		} else if(qName.equals("hi") || qName.equals("note")) {
+			if(openedTags.empty()) return;
+			final String tag = openedTags.pop();
+			if(tag.equals("paranum")) {
+				currParaNum = paraNumBuffer.toString().trim();
+				currPara.paraNum = currParaNum;
+			} else if(tag.equals("bold")) {
+				currPara.textMap.get(CSCDTermInfo.Field.BOLD).append(boldBuffer).append("\n");
+			} else if(tag.equals("note")) {
+				if(--noteDepth == 0)
+					currPara.textMap.get(CSCDTermInfo.Field.NOTE).append(noteBuffer).append("\n");
+			} else if(noteDepth > 0) {
+				// a tag inside a note
+				noteBuffer.append(" ");
+				return;
+			}
+			// do not glue the words around
+			if(!tag.equals("note") && currPara.mainText != null)
+				currPara.mainText.append(" ");
+		}
+	}
+
+	@Override
+	public void characters(final char[] ch, final int start, final int length) throws SAXException {
+		if(currPara == null) return;
+		if(noteDepth > 0) {
+			noteBuffer.append(ch, start, length);
+			return;
+		}
+		final String currTag = openedTags.empty() ? "" : openedTags.peek();
+		if(currPara.mainText != null)
+			currPara.mainText.append(ch, start, length);
+		if(currTag.equals("paranum"))
+			paraNumBuffer.append(ch, start, length);
+		else if(currTag.equals("bold"))
+			boldBuffer.append(ch, start, length);
+	}
+
+	@Override
+	public void error(final SAXParseException e) throws SAXException{
+		System.err.println("SAX Error: "+e.getMessage());
+	}
+
+	@Override
+	public void fatalError(final SAXParseException e) throws SAXException{
+		System.err.println("SAX Fatal Error: "+e.getMessage());
+	}
+
+	@Override
+	public void warning(final SAXParseException e) throws SAXException{
+		System.err.println("SAX Warning: "+e.getMessage());
+	}
+
+	// inner classes
+	static class Paragraph {
+		private final Map<CSCDTermInfo.Field, StringBuilder> textMap = new EnumMap<>(CSCDTermInfo.Field.class);
+		private final StringBuilder mainText; // null if the rend is not a field
+		private String paraNum;
+
+		private Paragraph(final String rend, final String paraNum) {
+			this.paraNum = paraNum;
+			for(final CSCDTermInfo.Field fld : CSCDTermInfo.Field.values())
+				textMap.put(fld, new StringBuilder());
+			final String tag = rend.toUpperCase();
+			mainText = CSCDTermInfo.Field.isValid(tag) ? textMap.get(CSCDTermInfo.Field.valueOf(tag)) : null;
+		}
+
+		private boolean isEmpty() {
+			for(final StringBuilder sb : textMap.values()) {
+				if(sb.toString().trim().length() > 0)
+					return false;
+			}
+			return true;
+		}
+
+		Map<CSCDTermInfo.Field, StringBuilder> getTextMap() {
+			return textMap;
+		}
+
+		String getParaNum() {
+			return paraNum;
+		}
+	}
+}
@@ -23,8 +23,9 @@ import java.util.*;
 
 /** 
  * This class manages term's information (frequency, etc.), mainly used by Tokenizer.
+ * The positions are kept in primitive arrays, the list-based methods are only views.
  * @author J.R. Bhaddacak
- * @version 2.0
+ * @version 2.1
  * @since 2.0
  */
  
@@ -49,8 +50,10 @@ public class CSCDTermInfo {
 			return result;
 		}
 	}
+	private static final Field[] FIELDS = Field.values();
 	private final String term;
-	private final Map<Field, List<int[]>> postingMap = new EnumMap<>(Field.class);
+	// the postings of each field by ordinal, null if none
+	private final Postings[] postings = new Postings[FIELDS.length];
 
 	public CSCDTermInfo(final String term) {
 		this.term = term;
@@ -60,15 +63,89 @@ public class CSCDTermInfo {
 		return term;
 	}
 
+	/**
+	 * Adds a position of the term, the line in the field and the token index in the line.
+	 */
+	public void addPosition(final Field fld, final int line, final int index) {
+		Postings pst = postings[fld.ordinal()];
+		if(pst == null) {
+			pst = new Postings();
+			postings[fld.ordinal()] = pst;
+		}
+		pst.add(line, index);
+	}
+
+	public List<Field> getFields() {
+		final List<Field> result = new ArrayList<>();
+		for(final Field f : FIELDS) {
+			if(postings[f.ordinal()] != null)
+				result.add(f);
+		}
+		return result;
+	}
+
+	public int getFrequency(final Field fld) {
+		final Postings pst = postings[fld.ordinal()];
+		return pst == null ? 0 : pst.size;
+	}
+
+	public int getLine(final Field fld, final int i) {
+		return (int)(postings[fld.ordinal()].items[i] >>> 32);
+	}
+
+	public int getIndex(final Field fld, final int i) {
+		return (int)postings[fld.ordinal()].items[i];
+	}
+
 	public void addPosting(final Field fld, final List<int[]> pst) {
-		postingMap.put(fld, pst);
+		final Postings newPst = new Postings();
+		for(final int[] p : pst)
+			newPst.add(p[0], p[1]);
+		postings[fld.ordinal()] = newPst;
 	}
 
+	/**
+	 * Returns a read-only view of the postings, each as { line, index }.
+	 */
 	public Map<Field, List<int[]>> getPostingMap() {
-		return postingMap;
+		final Map<Field, List<int[]>> result = new EnumMap<>(Field.class);
+		for(final Field f : FIELDS) {
+			if(postings[f.ordinal()] != null)
+				result.put(f, getPositionList(f));
+		}
+		return result;
 	}
 
 	public List<int[]> getPositionList(final Field field) {
-		return postingMap.get(field);
+		final Postings pst = postings[field.ordinal()];
+		if(pst == null)
+			return null;
+		return new AbstractList<int[]>() {
+			@Override
+			public int[] get(final int i) {
+				Objects.checkIndex(i, pst.size);
+				return new int[] { (int)(pst.items[i] >>> 32), (int)pst.items[i] };
+			}
+
+			@Override
+			public int size() {
+				return pst.size;
+			}
+		};
+	}
+
+	// inner classes
+	/**
+	 * The growable array of positions, each packed in a long (line in the high half).
+	 */
+	private static class Postings {
+		private long[] items = new long[4];
+		private int size = 0;
+
+		private void add(final int line, final int index) {
+			if(size == items.length)
+				items = Arrays.copyOf(items, size * 2);
+			items[size++] = ((long)line << 32) | (index & 0xFFFFFFFFL);
+		}
 	}
 }
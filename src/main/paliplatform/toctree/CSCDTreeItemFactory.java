@@ -24,7 +24,6 @@ import paliplatform.*;
 import javafx.scene.control.TreeItem;
 
 import java.io.*;
-import java.util.zip.*;
 
 import org.xml.sax.*;
 import org.xml.sax.helpers.DefaultHandler;
@@ -54,12 +53,12 @@ class CSCDTreeItemFactory {
 			final SAXParser saxParser = spf.newSAXParser();
 			final DefaultHandler handler = new TOCTreeSAXHandler(node);
 			if(tag.isInArchive()) {
-				final ZipFile zip = new ZipFile(new File(Utilities.ROOTDIR + Utilities.COLLPATH + Utilities.CSCD_ZIP));
-				final ZipEntry entry = zip.getEntry(Utilities.CSCD_DIR + tag.getFileName());
-				if(entry != null) {
-					saxParser.parse(zip.getInputStream(entry), handler);
+				final InputStream in = CorpusStore.INSTANCE.getInputStream(tag.getFileName());
+				if(in != null) {
+					try(in) {
+						saxParser.parse(in, handler);
+					}
 				}
-				zip.close();
 			} else {
 				saxParser.parse(new File(Utilities.ROOTDIR + Utilities.COLLPATH + tag.getFileName()), handler);
 			}
@@ -23,8 +23,10 @@ import paliplatform.*;
 
 import java.io.*;
 import java.util.*;
-import java.util.zip.*;
 import java.util.regex.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
 import java.text.Normalizer;
 import java.text.Normalizer.Form;
 
@@ -83,6 +85,8 @@ public class DocumentFinder extends BorderPane {
 	private final ComboBox<String> searchComboBox;
 	private SearchField searchIn = SearchField.TEXT;
 	private Task<Boolean> searchTask = null;
+	private String searchInfo = "";
+	private static final ForkJoinPool searchPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
 	
 	public DocumentFinder() {
 		for(final TextGroup tg : TextGroup.values())
@@ -164,6 +168,7 @@ public class DocumentFinder extends BorderPane {
 		searchComboBox.setPrefWidth(Utilities.getRelativeSize(22));
 		searchComboBox.setOnShowing(e -> recordQuery());
 		searchTextField = (TextField)textInput.getInput();
+		textInput.setSuggester(TermSuggester::getCorpusSuggester);
 		searchTextField.textProperty().addListener((obs, oldValue, newValue) -> {
 			if(searchIn != SearchField.CONTENT) {
 				final String strQuery = Normalizer.normalize(newValue.trim(), Form.NFC);
@@ -345,6 +350,7 @@ public class DocumentFinder extends BorderPane {
 
 	private void clearResult() {
 		resultList.clear();
+		searchInfo = "";
 		updateStatus();
 	}
 
@@ -471,34 +477,108 @@ public class DocumentFinder extends BorderPane {
 		} catch(PatternSyntaxException e) {
 			return;
 		}
+		// plain words and their alternations bypass regex
+		final LiteralMatcher literalMatcher = LiteralMatcher.fromRegex(text);
+		final List<String> fileList = new ArrayList<>();
+		for(final String filename : Utilities.cscdFiles) {
+			final String id = filename.substring(0, filename.indexOf(".xml"));
+			if(filterByTextGroup(id))
+				fileList.add(filename);
+		}
 		searchTask = new Task<Boolean>() {
 			@Override
 			protected Boolean call() throws Exception {
-				final int total = Utilities.cscdFiles.size();
-				try{
-					final ZipFile zip = new ZipFile(new File(Utilities.ROOTDIR + Utilities.COLLPATH + Utilities.CSCD_ZIP));
-					int count = 0;
-					updateMessage("Searching... (please wait)");
-					for(final String filename : Utilities.cscdFiles) {
-						final String id = filename.substring(0, filename.indexOf(".xml"));
-						if(!filterByTextGroup(id)) continue;
-						final ZipEntry entry = zip.getEntry(Utilities.CSCD_DIR + filename);
-						final Scanner in = new Scanner(zip.getInputStream(entry), "UTF-8");
-						final long foundCount = in.findAll(searchPatt).count();
-						if(foundCount > 0) {
-							final DocInfo doc = Utilities.docInfoMap.get(id);
-							final PaliDocument pd = new PaliDocument(doc.getFullTitle(), filename);
-							pd.searchResultCountProperty().set((int)foundCount);
-							resultList.add(pd);
+				final long startTime = System.nanoTime();
+				// open only the candidates that can match, according to the trigram index
+				final int docTotal = fileList.size();
+				if(!TrigramIndex.INSTANCE.isReady())
+					updateMessage("Preparing trigram index (first time only)...");
+				TrigramIndex.INSTANCE.prepare(this::isCancelled, n -> updateProgress(n, Utilities.cscdFiles.size()));
+				if(isCancelled()) return false;
+				final List<String> candList = TrigramIndex.INSTANCE.filter(searchPatt, fileList);
+				final int total = candList.size();
+				final AtomicInteger count = new AtomicInteger();
+				final AtomicLong sampleLiteralTime = new AtomicLong();
+				final AtomicLong sampleRegexTime = new AtomicLong();
+				final Queue<PaliDocument> pending = new ConcurrentLinkedQueue<>();
+				final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+				// add results in batches, at most one update is waiting in the FX thread
+				final Runnable flush = () -> {
+					flushScheduled.set(false);
+					if(isCancelled()) return;
+					final List<PaliDocument> batch = new ArrayList<>();
+					for(PaliDocument pd; (pd = pending.poll()) != null;)
+						batch.add(pd);
+					resultList.addAll(batch);
+					updateStatus();
+				};
+				final IntConsumer searchDoc = i -> {
+					final String filename = candList.get(i);
+					try {
+						final CharSequence content = CorpusStore.INSTANCE.getCharContent(filename);
+						if(content != null) {
+							int foundCount = 0;
+							if(literalMatcher == null) {
+								final Matcher matcher = searchPatt.matcher(content);
+								while(matcher.find()) {
+									foundCount++;
+									if((foundCount & 0xFF) == 0 && isCancelled()) return;
+								}
+							} else {
+								final long start = System.nanoTime();
+								foundCount = literalMatcher.count(content);
+								if(i == 0) {
+									// time regex on the first document, to tell the speedup
+									final long mid = System.nanoTime();
+									final Matcher matcher = searchPatt.matcher(content);
+									while(matcher.find());
+									sampleRegexTime.set(System.nanoTime() - mid);
+									sampleLiteralTime.set(mid - start);
+								}
+							}
+							if(foundCount > 0) {
+								final String id = filename.substring(0, filename.indexOf(".xml"));
+								final DocInfo doc = Utilities.docInfoMap.get(id);
+								// a document not in the list is still shown, by its name
+								final PaliDocument pd = new PaliDocument(doc == null ? id : doc.getFullTitle(), filename);
+								pd.searchResultCountProperty().set(foundCount);
+								pending.add(pd);
+								if(flushScheduled.compareAndSet(false, true))
+									Platform.runLater(flush);
+							}
 						}
-						in.close();
-						updateProgress(++count, total);
+					} catch(IOException e) {
+						System.err.println(e);
 					}
-					zip.close();
-				} catch(IOException e) {
+					updateProgress(count.incrementAndGet(), total);
+				};
+				updateMessage(String.format("Searching %,d of %,d documents... (please wait)", total, docTotal));
+				updateProgress(0, total);
+				final RangeAction action = new RangeAction(0, total, searchDoc, this::isCancelled);
+				try {
+					searchPool.submit(action).get();
+				} catch(InterruptedException | CancellationException e) {
+					// the search is cancelled, the workers stop at their next check
+					action.cancel(true);
+					return false;
+				} catch(ExecutionException e) {
 					System.err.println(e);
 				}
+				final long elapsed = System.nanoTime() - startTime;
+				final StringBuilder info = new StringBuilder();
+				if(literalMatcher == null) {
+					info.append("regex");
+				} else {
+					info.append(literalMatcher.isMultiple() ? "Aho-Corasick" : "Boyer-Moore-Horspool");
+					if(sampleLiteralTime.get() > 0)
+						info.append(String.format(", %.1f× faster than regex", (double)sampleRegexTime.get() / sampleLiteralTime.get()));
+				}
+				info.append(String.format(", %,d of %,d docs scanned, %.2f s", total, docTotal, elapsed / 1e9));
 				Platform.runLater(() -> {
+					if(isCancelled()) return;
+					searchInfo = info.toString();
+					flush.run();
+					FXCollections.sort(resultList, PaliDocument.getFileNameComparator());
 					progressBar.progressProperty().unbind();
 					mainPane.setBottom(statusBox);
 					updateStatus();
@@ -518,7 +598,7 @@ public class DocumentFinder extends BorderPane {
 		final int num = resultList.size();
 		final String s = num > 1 ? "s" : "";
 		final String text = num == 0 ? "No item found" : num + " item" + s + " found";
-		statusMessage.setText(text);
+		statusMessage.setText(searchInfo.isEmpty() ? text : text + " (" + searchInfo + ")");
 	}
 
 	private void recordQuery() {
@@ -582,4 +662,39 @@ public class DocumentFinder extends BorderPane {
 	private void saveCSV() {
 		Utilities.saveText(makeCSV(), "search-result.csv");
 	}
+
+	// inner classes
+	/**
+	 * Splits a range of indices into work-stealing subtasks, each index is
+	 * processed by the given consumer. The remaining work is skipped
+	 * once the stopper says so.
+	 */
+	private static class RangeAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private static final int THRESHOLD = 2;
+		private final int lo;
+		private final int hi;
+		private final IntConsumer consumer;
+		private final BooleanSupplier stopper;
+
+		private RangeAction(final int lo, final int hi, final IntConsumer consumer, final BooleanSupplier stopper) {
+			this.lo = lo;
+			this.hi = hi;
+			this.consumer = consumer;
+			this.stopper = stopper;
+		}
+
+		@Override
+		protected void compute() {
+			if(hi - lo <= THRESHOLD) {
+				for(int i = lo; i < hi; i++) {
+					if(stopper.getAsBoolean() || isCancelled()) return;
+					consumer.accept(i);
+				}
+			} else {
+				final int mid = (lo + hi) >>> 1;
+				invokeAll(new RangeAction(lo, mid, consumer, stopper), new RangeAction(mid, hi, consumer, stopper));
+			}
+		}
+	}
 }
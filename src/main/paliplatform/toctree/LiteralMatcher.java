@@ -0,0 +1,204 @@
+/*
+ * LiteralMatcher.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform.toctree;
+
+import java.util.*;
+
+/**
+ * The fast matcher for queries that are plain words or alternations of them (a|b|c).
+ * A single word uses Boyer-Moore-Horspool, several words use Aho-Corasick.
+ * The counting follows java.util.regex, i.e., the leftmost match is taken,
+ * the first alternative wins at the same position, and matches do not overlap.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+class LiteralMatcher {
+	private static final String META_CHARS = "\\^$.|?*+()[]{}";
+	private final String[] words;
+	private final int maxLength;
+	// Horspool shift table, for a single word
+	private int[] shiftTable;
+	// Aho-Corasick automaton, for several words
+	private List<Map<Character, Integer>> gotoList;
+	private int[] failLinks;
+	private int[][] outputs;
+
+	private LiteralMatcher(final String[] words) {
+		this.words = words;
+		int max = 0;
+		for(final String w : words)
+			max = Math.max(max, w.length());
+		maxLength = max;
+		if(words.length == 1)
+			buildShiftTable();
+		else
+			buildAutomaton();
+	}
+
+	/**
+	 * Returns a matcher if the regex is literal words separated by '|', otherwise null.
+	 * Meta-characters escaped with a backslash count as literal.
+	 */
+	static LiteralMatcher fromRegex(final String regex) {
+		final List<String> wordList = new ArrayList<>();
+		final StringBuilder word = new StringBuilder();
+		for(int i = 0; i < regex.length(); i++) {
+			final char ch = regex.charAt(i);
+			if(ch == '\\') {
+				if(i + 1 >= regex.length()) return null;
+				final char next = regex.charAt(++i);
+				if(META_CHARS.indexOf(next) < 0) return null;
+				word.append(next);
+			} else if(ch == '|') {
+				if(word.length() == 0) return null;
+				wordList.add(word.toString());
+				word.setLength(0);
+			} else if(META_CHARS.indexOf(ch) >= 0) {
+				return null;
+			} else {
+				word.append(ch);
+			}
+		}
+		if(word.length() == 0) return null;
+		wordList.add(word.toString());
+		return new LiteralMatcher(wordList.toArray(new String[0]));
+	}
+
+	boolean isMultiple() {
+		return words.length > 1;
+	}
+
+	private void buildShiftTable() {
+		final String word = words[0];
+		final int len = word.length();
+		shiftTable = new int[Character.MAX_VALUE + 1];
+		Arrays.fill(shiftTable, len);
+		for(int i = 0; i < len - 1; i++)
+			shiftTable[word.charAt(i)] = len - 1 - i;
+	}
+
+	private void buildAutomaton() {
+		gotoList = new ArrayList<>();
+		final List<List<Integer>> outList = new ArrayList<>();
+		gotoList.add(new HashMap<>());
+		outList.add(new ArrayList<>());
+		for(int w = 0; w < words.length; w++) {
+			int state = 0;
+			for(final char ch : words[w].toCharArray()) {
+				Integer next = gotoList.get(state).get(ch);
+				if(next == null) {
+					next = gotoList.size();
+					gotoList.get(state).put(ch, next);
+					gotoList.add(new HashMap<>());
+					outList.add(new ArrayList<>());
+				}
+				state = next;
+			}
+			outList.get(state).add(w);
+		}
+		// compute failure links breadth-first, merging the outputs along them
+		failLinks = new int[gotoList.size()];
+		final Deque<Integer> queue = new ArrayDeque<>();
+		for(final int s : gotoList.get(0).values())
+			queue.add(s);
+		while(!queue.isEmpty()) {
+			final int state = queue.poll();
+			for(final Map.Entry<Character, Integer> entry : gotoList.get(state).entrySet()) {
+				final int child = entry.getValue();
+				int f = failLinks[state];
+				while(f != 0 && !gotoList.get(f).containsKey(entry.getKey()))
+					f = failLinks[f];
+				final Integer target = gotoList.get(f).get(entry.getKey());
+				failLinks[child] = target == null || target == child ? 0 : target;
+				outList.get(child).addAll(outList.get(failLinks[child]));
+				queue.add(child);
+			}
+		}
+		outputs = new int[outList.size()][];
+		for(int i = 0; i < outputs.length; i++)
+			outputs[i] = outList.get(i).stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private int nextState(int state, final char ch) {
+		while(true) {
+			final Integer next = gotoList.get(state).get(ch);
+			if(next != null) return next;
+			if(state == 0) return 0;
+			state = failLinks[state];
+		}
+	}
+
+	/**
+	 * Counts the non-overlapping matches in the text.
+	 */
+	int count(final CharSequence text) {
+		return words.length == 1 ? countSingle(text) : countMultiple(text);
+	}
+
+	private int countSingle(final CharSequence text) {
+		final String word = words[0];
+		final int len = word.length();
+		final int n = text.length();
+		int count = 0;
+		int pos = 0;
+		while(pos <= n - len) {
+			int j = len - 1;
+			while(j >= 0 && text.charAt(pos + j) == word.charAt(j))
+				j--;
+			if(j < 0) {
+				count++;
+				pos += len;
+			} else {
+				pos += shiftTable[text.charAt(pos + len - 1)];
+			}
+		}
+		return count;
+	}
+
+	private int countMultiple(final CharSequence text) {
+		final int n = text.length();
+		int count = 0;
+		int pos = 0;
+		while(pos < n) {
+			int state = 0;
+			int bestStart = -1;
+			int bestWord = -1;
+			int limit = n;
+			for(int i = pos; i < limit; i++) {
+				state = nextState(state, text.charAt(i));
+				for(final int w : outputs[state]) {
+					final int start = i - words[w].length() + 1;
+					if(bestStart < 0 || start < bestStart || (start == bestStart && w < bestWord)) {
+						bestStart = start;
+						bestWord = w;
+					}
+				}
+				// no match starting at or before the best one can end beyond this
+				if(bestStart >= 0)
+					limit = Math.min(n, bestStart + maxLength);
+			}
+			if(bestStart < 0) break;
+			count++;
+			pos = bestStart + words[bestWord].length();
+		}
+		return count;
+	}
+}
@@ -20,14 +20,18 @@
 package paliplatform.toctree;
 
 import paliplatform.*;
+import paliplatform.grammar.LemmaIndex;
 
 import java.util.*;
-import java.util.zip.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.*;
 import java.util.function.*;
 import java.util.stream.*;
 import java.io.*;
 import java.nio.file.*;
+import java.util.zip.CRC32;
 import java.text.Normalizer;
 import java.text.Normalizer.Form;
 
@@ -47,21 +51,63 @@ import javafx.beans.property.SimpleBooleanProperty;
 import javafx.concurrent.Task;
 
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.Analyzer.TokenStreamComponents;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.util.CharTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Matches;
+import org.apache.lucene.search.MultiCollectorManager;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.highlight.*;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.queries.spans.SpanMultiTermQueryWrapper;
+import org.apache.lucene.queries.spans.SpanNearQuery;
+import org.apache.lucene.queries.spans.SpanOrQuery;
+import org.apache.lucene.queries.spans.SpanQuery;
+import org.apache.lucene.queries.spans.SpanTermQuery;
+import org.apache.lucene.search.uhighlight.Passage;
+import org.apache.lucene.search.uhighlight.PassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.codecs.lucene92.Lucene92Codec;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.queryparser.classic.ParseException;
 
@@ -73,8 +119,41 @@ import org.apache.lucene.queryparser.classic.ParseException;
  */
 public class LuceneFinder extends SingletonWindow {
 	public static final LuceneFinder INSTANCE = new LuceneFinder();
+	private static final String OPTIONS_KEY = "paliplatform.options";
+	private static final String SOURCE_CSCD = "cscd";
+	private static final String SOURCE_EXTRA = "extra";
+	private static final int COMMIT_INTERVAL = 200;
+	private static final FieldType TEXT_FIELD_TYPE = createTextFieldType();
+	private static final FieldType SHADOW_FIELD_TYPE = org.apache.lucene.document.TextField.TYPE_NOT_STORED;
+	private static final int MAX_FRAGMENTS = 10;
+	private static final int MAX_HIGHLIGHT_LENGTH = 16 * 1024 * 1024; // chars, more than the longest field of a volume
+	private static final int PARA_HIT_FACTOR = 20;
+	private static final int MAX_PARA_PER_DOC = 10;
+	private static final int MAX_CACHED_QUERIES = 32;
+	private static final QueryResultCache<CachedSearch> resultCache = new QueryResultCache<>(MAX_CACHED_QUERIES);
+	private static final String[] PITAKA_CODES = { "", "vin", "sut", "abh", "ann" };
+	private static final String[] PITAKA_NAMES = { "All piṭakas", "Vinaya", "Suttanta", "Abhidhamma", "Añña" };
+	private static final String[] LAYER_CODES = { "", "mul", "att", "tik", "ann" };
+	private static final String[] LAYER_NAMES = { "All layers", "Mūla", "Aṭṭhakathā", "Ṭīkā", "Añña" };
+	private static final String ALL_BOOKS = "All books";
+	private static enum Proximity {
+		OFF("Query syntax"), NEAR("Near (any order)"), ORDERED("Ordered");
+		private final String name;
+		private Proximity(final String name) {
+			this.name = name;
+		}
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+	private static final int MAX_BOOK_FACETS = 5;
+	private static final Pattern WORD_PATTERN = Pattern.compile("[\\p{L}\\p{N}]+");
 	private final String indexRoot = Utilities.ROOTDIR + Utilities.INDEXPATH;
 	private String indexPath = indexRoot + Utilities.INDEXMAIN;
+	// other indexes searched together with the current one, with their on/off items
+	private final Map<String, CheckMenuItem> otherIndexMap = new LinkedHashMap<>();
+	private final Menu otherIndexMenu = new Menu("Search also");
 	private final BorderPane mainPane = new BorderPane();
 	private final BorderPane contentPane = new BorderPane();
 	private final PaliTextInput textInput = new PaliTextInput(PaliTextInput.InputType.COMBO);
@@ -90,12 +169,22 @@ public class LuceneFinder extends SingletonWindow {
 	private final InfoPopup mainHelpPopup = new InfoPopup();
 	private final InfoPopup searchHelpPopup = new InfoPopup();
 	private final ChoiceBox<Integer> maxResultChoice = new ChoiceBox<>();
+	private TermSuggester indexSuggester = null;
+	private final ChoiceBox<String> pitakaChoice = new ChoiceBox<>();
+	private final ChoiceBox<String> layerChoice = new ChoiceBox<>();
+	private final ComboBox<String> bookChoice = new ComboBox<>();
+	private final ChoiceBox<Proximity> proximityChoice = new ChoiceBox<>();
+	private final ChoiceBox<Integer> slopChoice = new ChoiceBox<>();
+	private final Label facetLabel = new Label();
 	private final CheckMenuItem keepCapMenuItem = new CheckMenuItem("Keep capitalized terms");
 	private final CheckMenuItem includeNumberMenuItem = new CheckMenuItem("Include numbers");
 	private final CheckMenuItem includeBoldMenuItem = new CheckMenuItem("Include field 'bold'");
 	private	final RadioMenuItem oneCharMenuItem = new RadioMenuItem("== 1 char long");
 	private final ToggleGroup lengthExclusionGroup = new ToggleGroup();
 	private final CheckMenuItem useStopwordsMenuItem = new CheckMenuItem("Use stopwords");
+	private final CheckMenuItem byParagraphMenuItem = new CheckMenuItem("Index by paragraph");
+	private final CheckMenuItem addFoldedMenuItem = new CheckMenuItem("Add diacritic-free fields");
+	private final CheckMenuItem addLemmaMenuItem = new CheckMenuItem("Add lemma fields");
 	private final RadioMenuItem allGroupsMenuItem = new RadioMenuItem("Whole collection (CSCD)");
 	private final RadioMenuItem allTipitakaMenuItem = new RadioMenuItem("Whole Tipiṭaka (no Añña)");
 	private final RadioMenuItem onlyVinMenuItem = new RadioMenuItem("Only Vinaya (M + A + Ṭ)");
@@ -108,10 +197,28 @@ public class LuceneFinder extends SingletonWindow {
 	private final RadioMenuItem onlyOneMenuItem = new RadioMenuItem(ONLY_ONE);
 	private final RadioMenuItem onlyAnnMenuItem = new RadioMenuItem("Only Añña");
 	private final ToggleGroup textGroupGroup = new ToggleGroup();
+	private final ToggleGroup buildThreadGroup = new ToggleGroup();
+	private final ToggleGroup ramBufferGroup = new ToggleGroup();
+	private final ToggleGroup finalMergeGroup = new ToggleGroup();
 	private final CheckMenuItem showWholeLineMenuItem = new CheckMenuItem("Show whole lines");
+	private final CheckMenuItem ignoreDiacriticsMenuItem = new CheckMenuItem("Ignore diacritics");
+	private final CheckMenuItem matchInflectionsMenuItem = new CheckMenuItem("Match all inflections");
 	private final SimpleBooleanProperty indexAvailable = new SimpleBooleanProperty(false);
 	private final ToggleButton showSearchDetailButton = new ToggleButton("", new TextIcon("glasses", TextIcon.IconSet.AWESOME));
+	private final ExecutorService queryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "lucene-query");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final ExecutorService searchExecutor = Executors.newFixedThreadPool(
+		Math.min(4, Runtime.getRuntime().availableProcessors()), runnable -> {
+			final Thread thread = new Thread(runnable, "lucene-search");
+			thread.setDaemon(true);
+			return thread;
+		});
+	private final AtomicLong searchSeq = new AtomicLong();
 	private TOCTreeNode currSelectedDoc = null;
+	private String currSelectedParaNum = "";
 	private String individualTextGroupFilter = "";
 	
 	private LuceneFinder() {
@@ -132,9 +239,20 @@ public class LuceneFinder extends SingletonWindow {
 		final Button selectIndexDirButton = new Button("", new TextIcon("folder-open", TextIcon.IconSet.AWESOME));
 		selectIndexDirButton.setTooltip(new Tooltip("Select index directory"));
 		selectIndexDirButton.setOnAction(actionEvent -> chooseIndexPath(false));
+		final MenuButton otherIndexButton = new MenuButton("", new TextIcon("folder-tree", TextIcon.IconSet.AWESOME));
+		otherIndexButton.setTooltip(new Tooltip("Search other indexes together"));
+		final MenuItem addOtherIndexMenuItem = new MenuItem("Add an index to search...");
+		addOtherIndexMenuItem.setOnAction(actionEvent -> addOtherIndex());
+		final MenuItem clearOtherIndexMenuItem = new MenuItem("Search the current index only");
+		clearOtherIndexMenuItem.setOnAction(actionEvent -> clearOtherIndexes());
+		otherIndexButton.getItems().addAll(addOtherIndexMenuItem, clearOtherIndexMenuItem, new SeparatorMenuItem(), otherIndexMenu);
 		final Button buildIndexButton = new Button("Build", new TextIcon("screwdriver-wrench", TextIcon.IconSet.AWESOME));
 		buildIndexButton.setTooltip(new Tooltip("Build/rebuild Lucene index"));
 		buildIndexButton.setOnAction(actionEvent -> buildIndex());
+		final Button updateIndexButton = new Button("Update", new TextIcon("arrows-rotate", TextIcon.IconSet.AWESOME));
+		updateIndexButton.setTooltip(new Tooltip("Update the index with changed documents"));
+		updateIndexButton.disableProperty().bind(indexAvailable.not());
+		updateIndexButton.setOnAction(actionEvent -> updateIndex());
 		final MenuButton mainOptionsMenu = new MenuButton("", new TextIcon("check-double", TextIcon.IconSet.AWESOME));		
 		mainOptionsMenu.setTooltip(new Tooltip("Options for indexing"));
 		onlyOneMenuItem.setOnAction(actionEvent -> selectIndividualTextGroup());
@@ -145,6 +263,8 @@ public class LuceneFinder extends SingletonWindow {
 										onlyMulMenuItem, onlyAttMenuItem, onlyTikMenuItem, onlyOneMenuItem, onlyAnnMenuItem);
 		textGroupGroup.selectToggle(allGroupsMenuItem);
 		keepCapMenuItem.setSelected(false);
+		addFoldedMenuItem.setSelected(true);
+		addLemmaMenuItem.setSelected(false);
 		includeBoldMenuItem.setSelected(false);
 		includeBoldMenuItem.setOnAction(actionEvent -> {
 			if(!includeBoldMenuItem.isSelected()) {
@@ -159,16 +279,45 @@ public class LuceneFinder extends SingletonWindow {
 		lengthExcludeMenu.getItems().addAll(noExcMenuItem, oneCharMenuItem, twoCharMenuItem, threeCharMenuItem);
 		lengthExclusionGroup.getToggles().addAll(noExcMenuItem, oneCharMenuItem, twoCharMenuItem, threeCharMenuItem);
 		lengthExclusionGroup.selectToggle(oneCharMenuItem);
+		final Menu buildSettingsMenu = new Menu("Build settings");
+		final Menu buildThreadMenu = new Menu("Parsing threads");
+		final int cores = Runtime.getRuntime().availableProcessors();
+		for(final int n : new int[] { 1, 2, 4, 8 }) {
+			if(n > 1 && n > cores) break;
+			final RadioMenuItem threadMenuItem = new RadioMenuItem("" + n);
+			threadMenuItem.setUserData(n);
+			buildThreadMenu.getItems().add(threadMenuItem);
+			buildThreadGroup.getToggles().add(threadMenuItem);
+		}
+		final Menu ramBufferMenu = new Menu("RAM buffer");
+		for(final int mb : new int[] { 16, 64, 256 }) {
+			final RadioMenuItem ramMenuItem = new RadioMenuItem(mb + " MB");
+			ramMenuItem.setUserData(mb);
+			ramBufferMenu.getItems().add(ramMenuItem);
+			ramBufferGroup.getToggles().add(ramMenuItem);
+		}
+		final Menu finalMergeMenu = new Menu("Final merge");
+		final RadioMenuItem noMergeMenuItem = new RadioMenuItem("No merge");
+		noMergeMenuItem.setUserData(0);
+		final RadioMenuItem fewSegMenuItem = new RadioMenuItem("Merge to <= 5 segments");
+		fewSegMenuItem.setUserData(5);
+		final RadioMenuItem oneSegMenuItem = new RadioMenuItem("Merge to 1 segment");
+		oneSegMenuItem.setUserData(1);
+		finalMergeMenu.getItems().addAll(noMergeMenuItem, fewSegMenuItem, oneSegMenuItem);
+		finalMergeGroup.getToggles().addAll(noMergeMenuItem, fewSegMenuItem, oneSegMenuItem);
+		buildSettingsMenu.getItems().addAll(buildThreadMenu, ramBufferMenu, finalMergeMenu);
+		setDefaultBuildSettings();
 		final MenuItem editStopwordsMenuItem = new MenuItem("Edit stopwords");
 		editStopwordsMenuItem.setOnAction(actionEvent -> editStopwords());
 		final MenuItem setToDefaultMenuItem = new MenuItem("Set to defaults");
 		setToDefaultMenuItem.setOnAction(actionEvent -> setDefaultIndexOptions());
 		mainOptionsMenu.getItems().addAll(textGroupMenu, keepCapMenuItem, includeNumberMenuItem, includeBoldMenuItem,
-										lengthExcludeMenu, useStopwordsMenuItem, 
+										lengthExcludeMenu, useStopwordsMenuItem, byParagraphMenuItem, addFoldedMenuItem, addLemmaMenuItem,
+										buildSettingsMenu,
 										new SeparatorMenuItem(), editStopwordsMenuItem, setToDefaultMenuItem);
 		final Button mainHelpButton = new Button("", new TextIcon("circle-question", TextIcon.IconSet.AWESOME));
 		mainHelpButton.setOnAction(actionEvent -> mainHelpPopup.showPopup(mainHelpButton, InfoPopup.Pos.BELOW_RIGHT, true));
-		toolBar.getItems().addAll(new Separator(), selectIndexDirButton, buildIndexButton, mainOptionsMenu, mainHelpButton);
+		toolBar.getItems().addAll(new Separator(), selectIndexDirButton, otherIndexButton, buildIndexButton, updateIndexButton, mainOptionsMenu, mainHelpButton);
 		mainPane.setTop(toolBar);
 
 		// add main content
@@ -186,6 +335,7 @@ public class LuceneFinder extends SingletonWindow {
 			}
 		});
 		searchTextField = (TextField)textInput.getInput();
+		textInput.setSuggester(() -> indexSuggester != null ? indexSuggester : TermSuggester.getCorpusSuggester());
 		final Button searchButton = new Button("Search");
 		searchButton.disableProperty().bind(indexAvailable.not());
 		searchButton.setOnAction(actionEvent -> search());
@@ -210,13 +360,45 @@ public class LuceneFinder extends SingletonWindow {
 		final MenuButton searchOptionsMenu = new MenuButton("", new TextIcon("check-double", TextIcon.IconSet.AWESOME));		
 		searchOptionsMenu.setTooltip(new Tooltip("Options for search results"));
 		showWholeLineMenuItem.setOnAction(actionEvent -> search());
-		searchOptionsMenu.getItems().addAll(showWholeLineMenuItem);
+		ignoreDiacriticsMenuItem.setOnAction(actionEvent -> search());
+		matchInflectionsMenuItem.setOnAction(actionEvent -> search());
+		searchOptionsMenu.getItems().addAll(showWholeLineMenuItem, ignoreDiacriticsMenuItem, matchInflectionsMenuItem);
 		final Button searchHelpButton = new Button("", new TextIcon("circle-question", TextIcon.IconSet.AWESOME));
 		searchHelpButton.setOnAction(actionEvent -> searchHelpPopup.showPopup(searchHelpButton, InfoPopup.Pos.BELOW_RIGHT, true));
 		searchToolBar.getItems().addAll(searchComboBox, textInput.getClearButton(), textInput.getMethodButton(),
 									searchButton, maxResultChoice, fieldSelButton, showSearchDetailButton, 
 									foldUpAllButton, foldDownAllButton, searchOptionsMenu, searchHelpButton);
-		contentPane.setTop(searchToolBar);
+		// add scope toolbar, the filters of the whole-collection index
+		final ToolBar scopeToolBar = new ToolBar();
+		pitakaChoice.setTooltip(new Tooltip("Piṭaka"));
+		pitakaChoice.getItems().addAll(PITAKA_NAMES);
+		pitakaChoice.getSelectionModel().select(0);
+		pitakaChoice.setOnAction(actionEvent -> search());
+		layerChoice.setTooltip(new Tooltip("Text layer"));
+		layerChoice.getItems().addAll(LAYER_NAMES);
+		layerChoice.getSelectionModel().select(0);
+		layerChoice.setOnAction(actionEvent -> search());
+		bookChoice.setTooltip(new Tooltip("Book"));
+		bookChoice.setPrefWidth(Utilities.getRelativeSize(16));
+		bookChoice.getItems().add(ALL_BOOKS);
+		bookChoice.getSelectionModel().select(0);
+		bookChoice.setOnAction(actionEvent -> search());
+		final Button resetScopeButton = new Button("", new TextIcon("xmark", TextIcon.IconSet.AWESOME));
+		resetScopeButton.setTooltip(new Tooltip("Reset the scope"));
+		resetScopeButton.setOnAction(actionEvent -> resetScope());
+		// proximity search, the words within some words apart
+		proximityChoice.setTooltip(new Tooltip("Proximity search"));
+		proximityChoice.getItems().addAll(Proximity.values());
+		proximityChoice.getSelectionModel().select(Proximity.OFF);
+		proximityChoice.setOnAction(actionEvent -> search());
+		slopChoice.setTooltip(new Tooltip("Maximum words apart"));
+		slopChoice.getItems().addAll(0, 1, 2, 3, 5, 10, 20, 50);
+		slopChoice.getSelectionModel().select(Integer.valueOf(3));
+		slopChoice.disableProperty().bind(proximityChoice.valueProperty().isEqualTo(Proximity.OFF));
+		slopChoice.setOnAction(actionEvent -> search());
+		scopeToolBar.getItems().addAll(new Label("Scope:"), pitakaChoice, layerChoice, bookChoice, resetScopeButton,
+									new Separator(), proximityChoice, slopChoice, new Separator(), facetLabel);
+		contentPane.setTop(new VBox(searchToolBar, scopeToolBar));
 
 		// add search result box at the center
 		searchResultBox.prefWidthProperty().bind(contentPane.widthProperty().subtract(16));
@@ -305,9 +487,7 @@ public class LuceneFinder extends SingletonWindow {
 		}
 	}
 
-	private void buildIndex() {
-		final boolean confirm = chooseIndexPath(true);
-		if(!confirm) return;
+	private String getFileFilter() {
 		final String fileFilter;
 		final Toggle toggle = textGroupGroup.getSelectedToggle();
 		if(toggle == onlyVinMenuItem)
@@ -330,61 +510,213 @@ public class LuceneFinder extends SingletonWindow {
 			fileFilter = individualTextGroupFilter;
 		else
 			fileFilter = ".*";
+		return fileFilter;
+	}
+
+	private void buildIndex() {
+		final boolean confirm = chooseIndexPath(true);
+		if(!confirm) return;
+		final String fileFilter = getFileFilter();
 		if(fileFilter.isEmpty()) return;
+		// release the open searcher before the files are deleted
+		SearcherRegistry.INSTANCE.close(indexPath);
 		clearIndexDir();
+		startIndexTask(fileFilter, false);
+	}
+
+	/**
+	 * Updates the current index with only the documents changed, added, or removed,
+	 * including the extra documents. This also resumes an interrupted build.
+	 */
+	private void updateIndex() {
+		if(!indexAvailable.get()) return;
+		final String fileFilter = getFileFilter();
+		if(fileFilter.isEmpty()) return;
+		String builtOptions = null;
+		try(final Directory directory = FSDirectory.open(Path.of(indexPath))) {
+			builtOptions = SegmentInfos.readLatestCommit(directory).getUserData().get(OPTIONS_KEY);
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+		// the terms of the unchanged documents must stay comparable
+		if(builtOptions != null && !builtOptions.equals(getIndexOptions())) {
+			final Alert alert = new Alert(Alert.AlertType.INFORMATION);
+			alert.initOwner(this);
+			alert.setHeaderText(null);
+			alert.setContentText("The indexing options differ from those of the existing index, \nplease build the index again.");
+			alert.showAndWait();
+			return;
+		}
+		startIndexTask(fileFilter, true);
+	}
+
+	/**
+	 * Returns the indexing options affecting the terms, recorded in the index's commit.
+	 */
+	private String getIndexOptions() {
+		final RadioMenuItem widExcRadio = (RadioMenuItem)lengthExclusionGroup.getSelectedToggle();
+		final String stopwordsHash = useStopwordsMenuItem.isSelected()
+									? Utilities.MD5Sum(new TreeSet<>(Utilities.stopwords).toString())
+									: "";
+		return "format=4;cap=" + keepCapMenuItem.isSelected() + ";num=" + includeNumberMenuItem.isSelected() +
+				";bold=" + includeBoldMenuItem.isSelected() + ";len=" + widExcRadio.getText() +
+				";stop=" + stopwordsHash + ";para=" + byParagraphMenuItem.isSelected() +
+				";fold=" + addFoldedMenuItem.isSelected() + ";lemma=" + addLemmaMenuItem.isSelected();
+	}
+
+	private void startIndexTask(final String fileFilter, final boolean isUpdate) {
 		progressBar.setProgress(0);
+		// take the options here, they are used by the worker threads
+		final boolean includeBold = includeBoldMenuItem.isSelected();
+		final boolean keepCap = keepCapMenuItem.isSelected();
+		final boolean addFolded = addFoldedMenuItem.isSelected();
+		final boolean addLemma = addLemmaMenuItem.isSelected();
+		final Predicate<String> exclusion = getTokenExclusion();
+		final String indexOptions = getIndexOptions();
+		final int threadCount = (Integer)buildThreadGroup.getSelectedToggle().getUserData();
+		final int ramBufferMB = (Integer)ramBufferGroup.getSelectedToggle().getUserData();
+		final int maxSegments = (Integer)finalMergeGroup.getSelectedToggle().getUserData();
+		final String buildPath = indexPath;
+		// extra documents have their own names, so they go with the whole collection only
+		final boolean includeExtra = fileFilter.equals(".*");
+		final boolean byParagraph = byParagraphMenuItem.isSelected();
 		final Task<Boolean> buildTask = new Task<Boolean>() {
 			@Override
 			protected Boolean call() throws Exception {
-				updateMessage("Building index (please wait)");
-				try{
-					final Analyzer analyzer = new PaliIndexAnalyzer();
-					final Directory directory = FSDirectory.open(Path.of(indexPath));
-					final IndexWriterConfig config = new IndexWriterConfig(analyzer);
-					final IndexWriter iwriter = new IndexWriter(directory, config);
-					final SAXParserFactory spf = SAXParserFactory.newInstance();
-					final SAXParser saxParser = spf.newSAXParser();
-					final ZipFile zip = new ZipFile(new File(Utilities.ROOTDIR + Utilities.COLLPATH + Utilities.CSCD_ZIP));
-					final int total = zip.size();
-					int n = 0;
-					for(final Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
-						updateProgress(++n, total);
-						final ZipEntry entry = e.nextElement();
-						final String[] strName = entry.getName().split("/");
-						final String fname = strName[strName.length - 1];
-						if(!fname.contains("toc")) {
-							if(!fname.matches(fileFilter)) continue;
-							final Map<CSCDTermInfo.Field, StringBuilder> textMap = new EnumMap<>(CSCDTermInfo.Field.class);
-							for(final CSCDTermInfo.Field fld : CSCDTermInfo.Field.values())
-								textMap.put(fld, new StringBuilder());
-							final DefaultHandler handler = new CSCDTermInfoSAXHandler(textMap);
-							saxParser.parse(zip.getInputStream(entry), handler);
-							final Document doc = new Document();
-							doc.add(new StringField("path", fname, Field.Store.YES));
-							textMap.forEach((f, sb) -> {
-								boolean doAdd = true;
-								if(!includeBoldMenuItem.isSelected() && f == CSCDTermInfo.Field.BOLD)
-									doAdd = false;
-								if(doAdd) {
-									final String text = keepCapMenuItem.isSelected() ? sb.toString() : sb.toString().toLowerCase();
-									doc.add(new org.apache.lucene.document.TextField(f.getTag(), tokenize(text), Field.Store.NO));
+				if(addLemma) {
+					updateMessage("Preparing lemmas (please wait)");
+					if(!LemmaIndex.INSTANCE.prepare())
+						System.err.println("Lemma index is not available, lemma fields have only the terms");
+				}
+				updateMessage((isUpdate ? "Updating" : "Building") + " index (please wait)");
+				// the pipeline: this thread reads entries -> parse workers -> IndexWriter (thread-safe)
+				final BlockingQueue<RawDoc> rawQueue = new ArrayBlockingQueue<>(threadCount * 4);
+				final AtomicLong readCount = new AtomicLong();
+				final AtomicLong readBytes = new AtomicLong();
+				final AtomicLong parsedCount = new AtomicLong();
+				final AtomicLong indexedCount = new AtomicLong();
+				final AtomicLong failedCount = new AtomicLong();
+				final AtomicInteger liveWorkers = new AtomicInteger(threadCount);
+				String failure = null;
+				final long startTime = System.nanoTime();
+				final ExecutorService workers = Executors.newFixedThreadPool(threadCount);
+				final IndexWriterConfig config = new IndexWriterConfig(new PaliIndexAnalyzer(keepCap, exclusion));
+				// the stored texts are large, so compress them more
+				config.setCodec(new Lucene92Codec(Lucene92Codec.Mode.BEST_COMPRESSION));
+				config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+				config.setRAMBufferSizeMB(ramBufferMB);
+				try(final Directory directory = FSDirectory.open(Path.of(buildPath));
+					final IndexWriter iwriter = new IndexWriter(directory, config)) {
+					iwriter.setLiveCommitData(Map.of(OPTIONS_KEY, indexOptions).entrySet());
+					try {
+						for(int i = 0; i < threadCount; i++) {
+							workers.submit(() -> {
+								try {
+									runParseWorker(rawQueue, iwriter, isUpdate, byParagraph, includeBold, addFolded, addLemma,
+													parsedCount, indexedCount, failedCount);
+								} finally {
+									// the reader stops waiting when no worker is left
+									liveWorkers.decrementAndGet();
 								}
 							});
-							iwriter.addDocument(doc);
 						}
+						// existing documents with their stamps, for the diff
+						final Map<String, long[]> indexedMap = isUpdate ? readIndexedStamps(iwriter) : Collections.emptyMap();
+						final List<String> fileNames = new ArrayList<>();
+						for(final String fname : CorpusStore.INSTANCE.getFileNames()) {
+							if(!fname.contains("toc") && fname.matches(fileFilter))
+								fileNames.add(fname);
+						}
+						final List<String> extraNames = includeExtra ? getExtraXMLFiles() : Collections.emptyList();
+						final Set<String> wantedSet = new HashSet<>(fileNames);
+						wantedSet.addAll(extraNames);
+						for(final String path : indexedMap.keySet()) {
+							if(!wantedSet.contains(path))
+								iwriter.deleteDocuments(new Term("path", path));
+						}
+						final int total = fileNames.size() + extraNames.size();
+						int n = 0;
+						int queued = 0;
+						for(final String fname : fileNames) {
+							updateProgress(++n, total);
+							final long[] stamp = indexedMap.get(fname);
+							if(stamp != null && stamp[0] == CorpusStore.INSTANCE.getEntrySize(fname)
+									&& stamp[1] == CorpusStore.INSTANCE.getEntryCrc(fname))
+								continue;
+							try(final InputStream in = CorpusStore.INSTANCE.getInputStream(fname)) {
+								if(in == null) continue;
+								final byte[] content = in.readAllBytes();
+								readBytes.addAndGet(content.length);
+								readCount.incrementAndGet();
+								putRawDoc(rawQueue, new RawDoc(fname, content, computeCrc(content), false), liveWorkers);
+							}
+							// commit now and then, so an interrupted build can be resumed
+							if(++queued % COMMIT_INTERVAL == 0)
+								iwriter.commit();
+							if(n % 20 == 0)
+								updateMessage(formatBuildStats(startTime, readCount, readBytes, parsedCount, indexedCount));
+						}
+						for(final String fname : extraNames) {
+							updateProgress(++n, total);
+							final byte[] content;
+							try {
+								content = Files.readAllBytes(Path.of(Utilities.EXTRAPATH + fname));
+							} catch(IOException e) {
+								// skip the file, as a missing archive entry
+								System.err.println(fname + ": " + e);
+								failedCount.incrementAndGet();
+								continue;
+							}
+							final long crc = computeCrc(content);
+							final long[] stamp = indexedMap.get(fname);
+							if(stamp != null && stamp[0] == content.length && stamp[1] == crc)
+								continue;
+							readBytes.addAndGet(content.length);
+							readCount.incrementAndGet();
+							putRawDoc(rawQueue, new RawDoc(fname, content, crc, true), liveWorkers);
+						}
+						for(int i = 0; i < threadCount; i++)
+							putRawDoc(rawQueue, RawDoc.END, liveWorkers);
+						workers.shutdown();
+						while(!workers.awaitTermination(500, TimeUnit.MILLISECONDS))
+							updateMessage(formatBuildStats(startTime, readCount, readBytes, parsedCount, indexedCount));
+						if(maxSegments > 0) {
+							updateMessage(formatBuildStats(startTime, readCount, readBytes, parsedCount, indexedCount) + " | Merging");
+							iwriter.forceMerge(maxSegments);
+						}
+					} finally {
+						// stop the workers if the reading fails
+						workers.shutdownNow();
 					}
-					iwriter.close();
-					zip.close();
-				} catch(SAXException | ParserConfigurationException | IOException e) {
+				} catch(IOException e) {
 					System.err.println(e);
+					failure = e.getMessage();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					failure = "The indexing is interrupted.";
+				}
+				if(failure == null) {
+					updateMessage("Preparing term suggestions");
+					buildSuggester(buildPath);
 				}
+				final String failMessage = failure;
+				final long failedDocs = failedCount.get();
 				Platform.runLater(() -> {
 					progressBar.progressProperty().unbind();
 					statusPane.getChildren().remove(progressBox);
+					SearcherRegistry.INSTANCE.refresh(buildPath);
 					indexAvailable.set(checkIndexAvailable(indexPath));
 					updateIndexInfo();
+					if(failMessage != null || failedDocs > 0) {
+						final Alert alert = new Alert(failMessage == null ? Alert.AlertType.INFORMATION : Alert.AlertType.ERROR);
+						alert.initOwner(LuceneFinder.this);
+						alert.setHeaderText(null);
+						alert.setContentText((failMessage == null ? "" : "The index is not complete: " + failMessage + "\n")
+											+ (failedDocs > 0 ? failedDocs + " document(s) cannot be indexed, see the error log." : ""));
+						alert.showAndWait();
+					}
 				});
-				return true;
+				return failure == null;
 			}
 		};
 		progressBar.progressProperty().bind(buildTask.progressProperty());
@@ -404,6 +736,8 @@ public class LuceneFinder extends SingletonWindow {
 				success = proceedBuildConfirm();
 			if(success) {
 				indexPath = indexDir.getPath() + File.separator;
+				if(existed)
+					SearcherRegistry.INSTANCE.refresh(indexPath);
 				indexAvailable.set(existed);
 				updateIndexInfo();
 			}
@@ -413,6 +747,47 @@ public class LuceneFinder extends SingletonWindow {
 		return success;
 	}
 
+	/**
+	 * Adds an index to be searched together with the current one.
+	 */
+	private void addOtherIndex() {
+		final File indexDir = Utilities.selectDirectory(indexRoot, this, "Select an index to search also");
+		if(indexDir == null) return;
+		final String path = indexDir.getPath() + File.separator;
+		if(!checkIndexAvailable(path) || otherIndexMap.containsKey(path)) return;
+		final CheckMenuItem item = new CheckMenuItem(Utilities.getLastPathPart(path));
+		item.setSelected(true);
+		item.setOnAction(actionEvent -> {
+			updateIndexInfo();
+			search();
+		});
+		otherIndexMap.put(path, item);
+		otherIndexMenu.getItems().add(item);
+		updateIndexInfo();
+		search();
+	}
+
+	private void clearOtherIndexes() {
+		otherIndexMap.clear();
+		otherIndexMenu.getItems().clear();
+		updateIndexInfo();
+		search();
+	}
+
+	/**
+	 * Returns the indexes to search, the current one first.
+	 */
+	private List<String> getSearchPaths() {
+		final List<String> result = new ArrayList<>();
+		result.add(indexPath);
+		final String current = SearcherRegistry.normalize(indexPath);
+		otherIndexMap.forEach((path, item) -> {
+			if(item.isSelected() && !SearcherRegistry.normalize(path).equals(current))
+				result.add(path);
+		});
+		return result;
+	}
+
 	private boolean checkIndexAvailable(final String strDir) {
 		boolean result = false;
 		final File indexDir = new File(strDir);
@@ -429,27 +804,340 @@ public class LuceneFinder extends SingletonWindow {
 		}
 	}
 
+	/**
+	 * Reads the document count, the books, and the suggester of the current index
+	 * on the query thread, then shows them on the FX thread.
+	 */
 	private void updateIndexInfo() {
-		int docCount = 0;
-		if(indexAvailable.get()) {
+		final String path = indexPath;
+		final boolean available = indexAvailable.get();
+		final int otherCount = getSearchPaths().size() - 1;
+		queryExecutor.submit(() -> {
+			int docCount = 0;
+			List<String> bookList = null;
+			if(available) {
+				IndexSearcher isearcher = null;
+				try {
+					isearcher = SearcherRegistry.INSTANCE.acquire(path);
+					docCount = isearcher.getIndexReader().numDocs();
+					bookList = getBookList(isearcher.getIndexReader());
+				} catch(IOException e) {
+					System.err.println(e);
+				} finally {
+					SearcherRegistry.INSTANCE.release(path, isearcher);
+				}
+			}
+			final TermSuggester suggester = available ? TermSuggester.load(new File(path + Utilities.SUGGEST_INDEX)) : null;
+			final int count = docCount;
+			final List<String> books = bookList;
+			Platform.runLater(() -> {
+				if(!path.equals(indexPath)) return; // the index is changed meanwhile
+				indexSuggester = suggester;
+				if(books != null)
+					setBookList(books);
+				final String info = " [" + Utilities.getLastPathPart(path) + ": " + count + "]"
+									+ (otherCount > 0 ? " + " + otherCount + " other index" + (otherCount > 1 ? "es" : "") : "");
+				setTitle("Lucene Finder" + info);
+			});
+		});
+	}
+
+	/**
+	 * Makes the term suggester of an index from the terms of its text fields, and saves it
+	 * in the index directory. A term is weighted by its corpus frequency, or by its
+	 * document frequency if it is not in the corpus (e.g., from the extra documents).
+	 */
+	private static void buildSuggester(final String path) {
+		final TermSuggester corpus = TermSuggester.prepareCorpusSuggester();
+		final Map<String, Integer> weightMap = new HashMap<>();
+		try(final Directory directory = FSDirectory.open(Path.of(path));
+			final DirectoryReader reader = DirectoryReader.open(directory)) {
+			for(final CSCDTermInfo.Field f : CSCDTermInfo.Field.values()) {
+				final Terms terms = MultiTerms.getTerms(reader, f.getTag());
+				if(terms == null) continue;
+				final TermsEnum termsEnum = terms.iterator();
+				for(BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+					final String str = term.utf8ToString();
+					if(Character.isLetter(str.codePointAt(0)))
+						weightMap.merge(str, termsEnum.docFreq(), Integer::sum);
+				}
+			}
+		} catch(IOException e) {
+			System.err.println(e);
+			return;
+		}
+		if(corpus != null) {
+			weightMap.replaceAll((term, docFreq) -> {
+				final int freq = corpus.getWeight(term);
+				return freq > 0 ? freq : docFreq;
+			});
+		}
+		TermSuggester.create(weightMap).save(new File(path + Utilities.SUGGEST_INDEX));
+	}
+
+	/**
+	 * Fills the book selector with the books in the index, named by the title of their first file.
+	 */
+	private static List<String> getBookList(final IndexReader reader) throws IOException {
+		final Map<String, String> bookMap = new TreeMap<>();
+		final Terms bookTerms = MultiTerms.getTerms(reader, "book");
+		final Terms pathTerms = MultiTerms.getTerms(reader, "path");
+		if(bookTerms != null && pathTerms != null) {
+			final TermsEnum bookEnum = bookTerms.iterator();
+			for(BytesRef term = bookEnum.next(); term != null; term = bookEnum.next())
+				bookMap.put(term.utf8ToString(), "");
+			final TermsEnum pathEnum = pathTerms.iterator();
+			for(BytesRef term = pathEnum.next(); term != null; term = pathEnum.next()) {
+				final String path = term.utf8ToString();
+				final String book = getBookCode(path);
+				if(!bookMap.containsKey(book) || !bookMap.get(book).isEmpty()) continue;
+				final DocInfo docInfo = Utilities.docInfoMap.get(path.substring(0, path.lastIndexOf(".xml")));
+				bookMap.put(book, docInfo == null ? book : book + ": " + docInfo.getTitle(0));
+			}
+		}
+		return new ArrayList<>(bookMap.values());
+	}
+
+	private void setBookList(final List<String> books) {
+		final String selected = bookChoice.getValue();
+		bookChoice.getItems().setAll(ALL_BOOKS);
+		bookChoice.getItems().addAll(books);
+		bookChoice.getSelectionModel().select(bookChoice.getItems().contains(selected) ? selected : ALL_BOOKS);
+	}
+
+	private void resetScope() {
+		pitakaChoice.getSelectionModel().select(0);
+		layerChoice.getSelectionModel().select(0);
+		bookChoice.getSelectionModel().select(0);
+		search();
+	}
+
+	/**
+	 * Returns the piṭaka code of a CSCD file, e.g., s0101m.mul0.xml gives sut.
+	 */
+	private static String getPitakaCode(final String filename) {
+		final String result;
+		switch(filename.charAt(0)) {
+			case 'v': result = "vin"; break;
+			case 's': result = "sut"; break;
+			case 'a': result = "abh"; break;
+			default: result = "ann";
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the layer code of a CSCD file, e.g., s0101m.mul0.xml gives mul.
+	 * Añña files (e.g., e0101n) have their own layer.
+	 */
+	private static String getLayerCode(final String filename) {
+		final String result;
+		switch(filename.length() > 5 ? filename.charAt(5) : ' ') {
+			case 'm': result = "mul"; break;
+			case 'a': result = "att"; break;
+			case 't': result = "tik"; break;
+			default: result = "ann";
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the book code of a CSCD file, the part before the dot, e.g., s0101m.
+	 */
+	private static String getBookCode(final String filename) {
+		final int dotInd = filename.indexOf('.');
+		return dotInd < 0 ? filename : filename.substring(0, dotInd);
+	}
+
+	private static String getFacetName(final String facet, final String code) {
+		final String[] codes = facet.equals("pitaka") ? PITAKA_CODES : facet.equals("layer") ? LAYER_CODES : null;
+		final int ind = codes == null ? -1 : Arrays.asList(codes).indexOf(code);
+		if(ind < 0)
+			return code;
+		return (facet.equals("pitaka") ? PITAKA_NAMES : LAYER_NAMES)[ind];
+	}
+
+	/**
+	 * Creates a Lucene document of a whole file or a paragraph, with the file's information.
+	 * The path, size and CRC are also doc values, so they can be read quickly.
+	 * CSCD files have their piṭaka, layer, and book, for filtering and facet counts.
+	 * Each text field can have non-stored shadow fields, one without diacritics
+	 * and one with the lemmas of the terms.
+	 */
+	private static Document createDocument(final RawDoc raw, final Map<CSCDTermInfo.Field, StringBuilder> textMap,
+										final boolean includeBold, final boolean addFolded, final boolean addLemma) {
+		final Document doc = new Document();
+		doc.add(new StringField("path", raw.name, Field.Store.YES));
+		doc.add(new SortedDocValuesField("path", new BytesRef(raw.name)));
+		doc.add(new StringField("source", raw.isExtra ? SOURCE_EXTRA : SOURCE_CSCD, Field.Store.YES));
+		doc.add(new StoredField("size", raw.content.length));
+		doc.add(new NumericDocValuesField("size", raw.content.length));
+		doc.add(new StoredField("crc", raw.crc));
+		doc.add(new NumericDocValuesField("crc", raw.crc));
+		if(!raw.isExtra) {
+			final String[][] facets = { { "pitaka", getPitakaCode(raw.name) }, { "layer", getLayerCode(raw.name) },
+										{ "book", getBookCode(raw.name) } };
+			for(final String[] facet : facets) {
+				doc.add(new StringField(facet[0], facet[1], Field.Store.NO));
+				doc.add(new SortedDocValuesField(facet[0], new BytesRef(facet[1])));
+			}
+		}
+		textMap.forEach((f, sb) -> {
+			if(includeBold || f != CSCDTermInfo.Field.BOLD) {
+				final String text = cleanText(sb.toString());
+				if(!text.isEmpty()) {
+					doc.add(new Field(f.getTag(), text, TEXT_FIELD_TYPE));
+					if(addFolded)
+						doc.add(new Field(f.getTag() + PaliIndexAnalyzer.FOLDED_SUFFIX, text, SHADOW_FIELD_TYPE));
+					if(addLemma)
+						doc.add(new Field(f.getTag() + PaliIndexAnalyzer.LEMMA_SUFFIX, text, SHADOW_FIELD_TYPE));
+				}
+			}
+		});
+		return doc;
+	}
+
+	/**
+	 * Reads the path, size and CRC of the documents in the index.
+	 * Documents indexed without size or CRC get -1, so they are always updated.
+	 */
+	private static Map<String, long[]> readIndexedStamps(final IndexWriter iwriter) throws IOException {
+		final Map<String, long[]> result = new HashMap<>();
+		try(final DirectoryReader reader = DirectoryReader.open(iwriter)) {
+			final Set<String> fieldSet = Set.of("path", "size", "crc");
+			for(final LeafReaderContext leaf : reader.leaves()) {
+				final LeafReader lreader = leaf.reader();
+				final Bits liveDocs = lreader.getLiveDocs();
+				final SortedDocValues pathValues = lreader.getSortedDocValues("path");
+				final NumericDocValues sizeValues = lreader.getNumericDocValues("size");
+				final NumericDocValues crcValues = lreader.getNumericDocValues("crc");
+				final boolean hasDocValues = pathValues != null && sizeValues != null && crcValues != null;
+				for(int i = 0; i < lreader.maxDoc(); i++) {
+					if(liveDocs != null && !liveDocs.get(i)) continue;
+					if(hasDocValues) {
+						// paragraphs of a file share the same values, fast with doc values
+						if(!pathValues.advanceExact(i)) continue;
+						final String path = pathValues.lookupOrd(pathValues.ordValue()).utf8ToString();
+						if(result.containsKey(path)) continue;
+						result.put(path, new long[] {
+							sizeValues.advanceExact(i) ? sizeValues.longValue() : -1,
+							crcValues.advanceExact(i) ? crcValues.longValue() : -1 });
+					} else {
+						// older index, stored fields only
+						final Document doc = lreader.document(i, fieldSet);
+						final IndexableField size = doc.getField("size");
+						final IndexableField crc = doc.getField("crc");
+						result.put(doc.get("path"), new long[] {
+							size == null ? -1 : size.numericValue().longValue(),
+							crc == null ? -1 : crc.numericValue().longValue() });
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private static List<String> getExtraXMLFiles() {
+		final List<String> result = new ArrayList<>();
+		final File[] files = new File(Utilities.EXTRAPATH).listFiles(x -> x.getName().toLowerCase().endsWith(".xml"));
+		if(files != null) {
+			for(final File f : files)
+				result.add(f.getName());
+		}
+		return result;
+	}
+
+	private static InputStream openExtraFile(final String filename) throws IOException {
+		final File file = new File(Utilities.EXTRAPATH + filename);
+		return file.exists() ? new FileInputStream(file) : null;
+	}
+
+	private static long computeCrc(final byte[] content) {
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+		return crc.getValue();
+	}
+
+	/**
+	 * Parses and indexes the documents taken from the queue until the end mark.
+	 * A failure of a document is logged and counted, and the worker goes on.
+	 */
+	private static void runParseWorker(final BlockingQueue<RawDoc> rawQueue, final IndexWriter iwriter, final boolean isUpdate,
+									final boolean byParagraph, final boolean includeBold, final boolean addFolded, final boolean addLemma,
+									final AtomicLong parsedCount, final AtomicLong indexedCount, final AtomicLong failedCount) {
+		final SAXParser saxParser;
+		try {
+			saxParser = SAXParserFactory.newInstance().newSAXParser();
+		} catch(SAXException | ParserConfigurationException e) {
+			System.err.println(e);
+			return;
+		}
+		while(true) {
+			final RawDoc raw;
+			try {
+				raw = rawQueue.take();
+			} catch(InterruptedException e) {
+				return;
+			}
+			if(raw == RawDoc.END) break;
 			try {
-				final Directory directory = FSDirectory.open(Path.of(indexPath));
-				final DirectoryReader ireader = DirectoryReader.open(directory);
-				if(ireader != null) {
-					docCount = ireader.numDocs();
-					ireader.close();
+				final List<Document> docList = new ArrayList<>();
+				if(byParagraph) {
+					// one document for each paragraph, all with the same path
+					final List<CSCDParagraphSAXHandler.Paragraph> paraList = new ArrayList<>();
+					saxParser.parse(new ByteArrayInputStream(raw.content), new CSCDParagraphSAXHandler(paraList));
+					for(final CSCDParagraphSAXHandler.Paragraph para : paraList) {
+						final Document doc = createDocument(raw, para.getTextMap(), includeBold, addFolded, addLemma);
+						doc.add(new StoredField("paranum", para.getParaNum()));
+						doc.add(new SortedDocValuesField("paranum", new BytesRef(para.getParaNum())));
+						docList.add(doc);
+					}
+				} else {
+					final Map<CSCDTermInfo.Field, StringBuilder> textMap = new EnumMap<>(CSCDTermInfo.Field.class);
+					for(final CSCDTermInfo.Field fld : CSCDTermInfo.Field.values())
+						textMap.put(fld, new StringBuilder());
+					final DefaultHandler handler = new CSCDTermInfoSAXHandler(textMap);
+					saxParser.parse(new ByteArrayInputStream(raw.content), handler);
+					docList.add(createDocument(raw, textMap, includeBold, addFolded, addLemma));
 				}
-				directory.close();
-			} catch(IOException e) {
-				System.err.println(e);
+				parsedCount.incrementAndGet();
+				if(isUpdate)
+					iwriter.updateDocuments(new Term("path", raw.name), docList);
+				else
+					iwriter.addDocuments(docList);
+				indexedCount.incrementAndGet();
+			} catch(Exception e) {
+				System.err.println(raw.name + ": " + e);
+				failedCount.incrementAndGet();
+				saxParser.reset();
 			}
 		}
-		final String info = " [" + Utilities.getLastPathPart(indexPath) + ": " + docCount + "]";
-		setTitle("Lucene Finder" + info);
 	}
 
-	private String tokenize(final String text) {
-		final String[] tokens = text.split(Utilities.REX_NON_PALI_NUM);
+	/**
+	 * Puts a document to the queue, waiting as long as some worker is alive to take it.
+	 */
+	private static void putRawDoc(final BlockingQueue<RawDoc> rawQueue, final RawDoc raw, final AtomicInteger liveWorkers)
+								throws IOException, InterruptedException {
+		while(!rawQueue.offer(raw, 500, TimeUnit.MILLISECONDS)) {
+			if(liveWorkers.get() == 0)
+				throw new IOException("All indexing workers have stopped");
+		}
+	}
+
+	private static String formatBuildStats(final long startTime, final AtomicLong readCount, final AtomicLong readBytes,
+										final AtomicLong parsedCount, final AtomicLong indexedCount) {
+		final double secs = Math.max((System.nanoTime() - startTime) / 1e9, 0.001);
+		return String.format("Read: %,d (%.1f MB/s) | Parsed: %,d (%.1f/s) | Indexed: %,d (%.1f/s)",
+							readCount.get(), readBytes.get() / secs / (1024 * 1024),
+							parsedCount.get(), parsedCount.get() / secs,
+							indexedCount.get(), indexedCount.get() / secs);
+	}
+
+	/**
+	 * Returns the condition of the tokens excluded from indexing, by the current options.
+	 */
+	private Predicate<String> getTokenExclusion() {
 		final RadioMenuItem widExcRadio = (RadioMenuItem)lengthExclusionGroup.getSelectedToggle();
 		final Predicate<String> widExcCond;
 		if(widExcRadio.getText().contains("1"))
@@ -469,11 +1157,23 @@ public class LuceneFinder extends SingletonWindow {
 			stopwrdCond = x -> Utilities.stopwords.contains(x);
 		else
 			stopwrdCond = x -> false;
-		final String result = Arrays.asList(tokens).stream()
-										.filter(Predicate.not(stopwrdCond))
-										.filter(Predicate.not(inclNumCond))
-										.filter(Predicate.not(widExcCond))
-										.collect(Collectors.joining(" "));
+		return stopwrdCond.or(inclNumCond).or(widExcCond);
+	}
+
+	/**
+	 * Tidies up the text of a field, this is stored in the index for showing fragments.
+	 */
+	private static String cleanText(final String text) {
+		return text.replaceAll(" {2,}", " ").replace(" .", ".").replace(" ,", ",").trim();
+	}
+
+	private static FieldType createTextFieldType() {
+		final FieldType result = new FieldType(org.apache.lucene.document.TextField.TYPE_STORED);
+		// term vectors let the highlighter find the hits without analyzing the text again
+		result.setStoreTermVectors(true);
+		result.setStoreTermVectorPositions(true);
+		result.setStoreTermVectorOffsets(true);
+		result.freeze();
 		return result;
 	}
 
@@ -484,6 +1184,24 @@ public class LuceneFinder extends SingletonWindow {
 		includeBoldMenuItem.setSelected(false);
 		lengthExclusionGroup.selectToggle(oneCharMenuItem);
 		useStopwordsMenuItem.setSelected(false);
+		byParagraphMenuItem.setSelected(false);
+		addFoldedMenuItem.setSelected(true);
+		addLemmaMenuItem.setSelected(false);
+		setDefaultBuildSettings();
+	}
+
+	private void setDefaultBuildSettings() {
+		final int cores = Runtime.getRuntime().availableProcessors();
+		final List<Toggle> threadToggles = buildThreadGroup.getToggles();
+		// leave a core for reading and writing
+		Toggle threadToggle = threadToggles.get(0);
+		for(final Toggle t : threadToggles) {
+			if((Integer)t.getUserData() < cores)
+				threadToggle = t;
+		}
+		buildThreadGroup.selectToggle(threadToggle);
+		ramBufferGroup.selectToggle(ramBufferGroup.getToggles().get(1));
+		finalMergeGroup.selectToggle(finalMergeGroup.getToggles().get(0));
 	}
 
 	private void editStopwords() {
@@ -499,132 +1217,476 @@ public class LuceneFinder extends SingletonWindow {
 		final String strQuery = Normalizer.normalize(searchTextField.getText().trim(), Form.NFC);
 		if(strQuery.isEmpty()) return;
 		searchComboBox.commitValue();
-		final int maxCount = maxResultChoice.getSelectionModel().getSelectedItem();
-		try {
-			final Analyzer analyzer = new PaliIndexAnalyzer();
-			final Directory directory = FSDirectory.open(Path.of(indexPath));
-			final DirectoryReader ireader = DirectoryReader.open(directory);
-			final IndexSearcher isearcher = new IndexSearcher(ireader);
-			final Map<CSCDTermInfo.Field, ScoreDoc[]> scoreDocMap = new EnumMap<>(CSCDTermInfo.Field.class);
-			for(final CSCDTermInfo.Field f : CSCDTermInfo.Field.values()) {
-				if(fieldOptionsBox.isFieldSelected(f)) {
-					final QueryParser parser = new QueryParser(f.getTag(), analyzer);
-					parser.setDefaultOperator(QueryParser.Operator.AND);
-					final Query query = parser.parse(strQuery);
-					scoreDocMap.put(f, isearcher.search(query, maxCount).scoreDocs);
+		// collect the options here, the query itself runs off the FX thread
+		final SearchParams params = new SearchParams(strQuery);
+		final long seq = searchSeq.incrementAndGet();
+		queryExecutor.submit(() -> {
+			// skip if a newer query is already waiting
+			if(seq != searchSeq.get()) return;
+			final Map<String, Map<String, Integer>> facetMap = new LinkedHashMap<>();
+			final List<SearchResultItem> resultList = runSearch(params, facetMap);
+			Platform.runLater(() -> {
+				if(seq == searchSeq.get()) {
+					updateSearchResult(resultList);
+					updateFacetInfo(facetMap);
 				}
+			});
+		});
+	}
+
+	/**
+	 * Runs the query, and fills the facet map with the hit counts of each piṭaka, layer, and book.
+	 */
+	private List<SearchResultItem> runSearch(final SearchParams params, final Map<String, Map<String, Integer>> facetMap) {
+		final List<SearchResultItem> resultList = new ArrayList<>();
+		final List<IndexSearcher> searcherList = new ArrayList<>();
+		MultiReader multiReader = null;
+		try {
+			for(final String path : params.indexPaths)
+				searcherList.add(SearcherRegistry.INSTANCE.acquire(path));
+			// several indexes are searched as one, and their segments in parallel
+			final IndexSearcher isearcher;
+			final String[] sourceLabels;
+			final int[] docStarts;
+			if(searcherList.size() == 1) {
+				isearcher = searcherList.get(0);
+				sourceLabels = new String[] { "" };
+				docStarts = new int[] { 0 };
+			} else {
+				final IndexReader[] readers = searcherList.stream().map(IndexSearcher::getIndexReader).toArray(IndexReader[]::new);
+				// the sub-readers are referenced by the multi-reader until it is closed
+				multiReader = new MultiReader(readers, false);
+				isearcher = new IndexSearcher(multiReader, searchExecutor);
+				sourceLabels = params.indexPaths.stream().map(Utilities::getLastPathPart).toArray(String[]::new);
+				docStarts = new int[readers.length];
+				for(int i = 1; i < readers.length; i++)
+					docStarts[i] = docStarts[i - 1] + readers[i - 1].maxDoc();
+			}
+			final DirectoryReader mainReader = (DirectoryReader)searcherList.get(0).getIndexReader();
+			final FieldInfos fieldInfos = FieldInfos.getMergedFieldInfos(isearcher.getIndexReader());
+			// the query is analyzed as the (current) index is, stopwords not indexed are not searched either
+			final String indexOptions = mainReader.getIndexCommit().getUserData().get(OPTIONS_KEY);
+			final boolean useStopwords = !getOptionValue(indexOptions, "stop").isEmpty();
+			final Analyzer analyzer = new PaliIndexAnalyzer(true, useStopwords ? Utilities.stopwords::contains : null);
+			// search the shadow fields if asked and available, otherwise the exact fields
+			final PaliIndexAnalyzer.FieldKind kind;
+			if(params.matchInflections && hasShadowFields(fieldInfos, PaliIndexAnalyzer.LEMMA_SUFFIX) && LemmaIndex.INSTANCE.prepare())
+				kind = PaliIndexAnalyzer.FieldKind.LEMMA;
+			else if(params.ignoreDiacritics && hasShadowFields(fieldInfos, PaliIndexAnalyzer.FOLDED_SUFFIX))
+				kind = PaliIndexAnalyzer.FieldKind.FOLDED;
+			else
+				kind = PaliIndexAnalyzer.FieldKind.EXACT;
+			final String suffix = kind == PaliIndexAnalyzer.FieldKind.FOLDED ? PaliIndexAnalyzer.FOLDED_SUFFIX
+								: kind == PaliIndexAnalyzer.FieldKind.LEMMA ? PaliIndexAnalyzer.LEMMA_SUFFIX
+								: "";
+			// a paragraph index has many hits in a file, so take more and group them
+			final boolean byParagraph = fieldInfos.fieldInfo("paranum") != null;
+			final int maxHits = byParagraph ? params.maxCount * PARA_HIT_FACTOR : params.maxCount;
+			// the hits are reused if the same query is run again on the same reader, e.g.,
+			// when only the display options or a smaller number of results are changed
+			final String generation = searcherList.stream()
+											.map(x -> "" + ((DirectoryReader)x.getIndexReader()).getVersion())
+											.collect(Collectors.joining(","));
+			final String hitKey = kind + "\n" + params.fields + "\n" + params.pitaka + ":" + params.layer + ":" + params.book +
+								"\n" + params.proximity + ":" + params.slop +
+								"\n" + (useStopwords ? Utilities.stopwords.hashCode() : 0) + "\n" + params.strQuery;
+			CachedSearch cached = resultCache.get(params.indexPaths, generation, hitKey);
+			if(cached == null || cached.maxHits < maxHits) {
+				cached = collectHits(isearcher, fieldInfos, analyzer, params, kind, suffix, byParagraph, maxHits,
+									sourceLabels, docStarts);
+				resultCache.put(params.indexPaths, generation, hitKey, cached);
 			}
-			final List<SearchOutput> outputList = new ArrayList<>();
-			for(final CSCDTermInfo.Field f : scoreDocMap.keySet()) {
-				final ScoreDoc[] docs = scoreDocMap.get(f);
-				final Set<Integer> idSet = new HashSet<>();
-				for(final ScoreDoc sd : docs) {
-					if(!idSet.contains(sd.doc)) {
-						idSet.add(sd.doc);
-						outputList.add(new SearchOutput(f, sd));
+			facetMap.putAll(cached.facetMap);
+			final String viewKey = params.maxCount + ":" + params.showDetail + ":" + params.showWholeLine + ":" + params.keepCap;
+			final List<SearchResultItem> rendered = cached.renderedMap.get(viewKey);
+			if(rendered != null) {
+				resultList.addAll(rendered);
+			} else {
+				final List<SearchOutput> outputList = cached.outputList.subList(0, Math.min(maxHits, cached.outputList.size()));
+				// group the hits by file, in the order of the best hit of each file
+				final List<List<SearchOutput>> groupList = new ArrayList<>();
+				if(byParagraph) {
+					final Map<String, List<SearchOutput>> groupMap = new LinkedHashMap<>();
+					for(final SearchOutput so : outputList) {
+						// the same file in different indexes is not grouped together
+						final String groupKey = so.getSource() + "/" + so.getPath();
+						final List<SearchOutput> group = groupMap.get(groupKey);
+						if(group == null) {
+							if(groupMap.size() < params.maxCount)
+								groupMap.put(groupKey, new ArrayList<>(List.of(so)));
+						} else if(group.size() < MAX_PARA_PER_DOC) {
+							group.add(so);
+						}
 					}
+					groupList.addAll(groupMap.values());
+				} else {
+					for(final SearchOutput so : outputList)
+						groupList.add(List.of(so));
 				}
+				prepareSearchResult(groupList, cached.queryMap, isearcher, params, kind, resultList);
+				cached.renderedMap.put(viewKey, List.copyOf(resultList));
 			}
-			outputList.sort((x, y) -> Float.compare(y.getScore(), x.getScore()));
-			updateSearchResult(outputList, ireader, strQuery);
-			ireader.close();
-			directory.close();
 		} catch(ParseException | IOException e) {
 			System.err.println(e);
+		} finally {
+			if(multiReader != null) {
+				try {
+					multiReader.close();
+				} catch(IOException e) {
+					System.err.println(e);
+				}
+			}
+			for(int i = 0; i < searcherList.size(); i++)
+				SearcherRegistry.INSTANCE.release(params.indexPaths.get(i), searcherList.get(i));
 		}
+		return resultList;
 	}
 
-	private void updateSearchResult(final List<SearchOutput> outputList, final DirectoryReader ireader, final String strQuery) {
-		searchResultBox.getChildren().clear();
-		if(!outputList.isEmpty())
-			textInput.recordQuery();
-		final int maxCount = maxResultChoice.getSelectionModel().getSelectedItem();
-		final Map<Integer, Map<CSCDTermInfo.Field, StringBuilder>> resultTextMap = new HashMap<>();
+	/**
+	 * Runs the query with the scope filter, then finds which fields each hit matches,
+	 * and which index it comes from, if several are searched.
+	 * The facet counts are collected in the same pass.
+	 */
+	private static CachedSearch collectHits(final IndexSearcher isearcher, final FieldInfos fieldInfos, final Analyzer analyzer,
+											final SearchParams params, final PaliIndexAnalyzer.FieldKind kind, final String suffix,
+											final boolean byParagraph, final int maxHits, final String[] sourceLabels,
+											final int[] docStarts) throws ParseException, IOException {
+		// all terms have to be in the same field, so each field has its own clause,
+		// and the scores of the matched fields are summed up
+		final Map<CSCDTermInfo.Field, Query> queryMap = new EnumMap<>(CSCDTermInfo.Field.class);
+		final BooleanQuery.Builder queryBuilder = new BooleanQuery.Builder();
+		for(final CSCDTermInfo.Field f : params.fields) {
+			final Query query;
+			if(params.proximity == Proximity.OFF) {
+				final QueryParser parser = new QueryParser(f.getTag() + suffix, analyzer);
+				parser.setDefaultOperator(QueryParser.Operator.AND);
+				query = parser.parse(params.strQuery);
+			} else {
+				query = buildSpanQuery(f.getTag() + suffix, params.strQuery, analyzer,
+										params.slop, params.proximity == Proximity.ORDERED);
+				if(query == null) continue;
+			}
+			queryMap.put(f, query);
+			queryBuilder.add(new BoostQuery(query, getFieldBoost(f)), BooleanClause.Occur.SHOULD);
+		}
+		final Query fieldQuery = isearcher.rewrite(queryBuilder.build());
+		// the scope is a filter, it does not affect the scores
+		final BooleanQuery.Builder scopeBuilder = new BooleanQuery.Builder();
+		scopeBuilder.add(fieldQuery, BooleanClause.Occur.MUST);
+		final boolean hasFacets = fieldInfos.fieldInfo("pitaka") != null;
+		if(hasFacets) {
+			if(!params.pitaka.isEmpty())
+				scopeBuilder.add(new TermQuery(new Term("pitaka", params.pitaka)), BooleanClause.Occur.FILTER);
+			if(!params.layer.isEmpty())
+				scopeBuilder.add(new TermQuery(new Term("layer", params.layer)), BooleanClause.Occur.FILTER);
+			if(!params.book.isEmpty())
+				scopeBuilder.add(new TermQuery(new Term("book", params.book)), BooleanClause.Occur.FILTER);
+		}
+		final Query query = scopeBuilder.build();
+		// collect the top hits and count all hits by facet in one pass,
+		// the slices are searched concurrently if the searcher has an executor
+		final CollectorManager<TopScoreDocCollector, TopDocs> topManager = TopScoreDocCollector.createSharedManager(maxHits, null, Integer.MAX_VALUE);
+		final FacetCollectorManager facetManager = new FacetCollectorManager(hasFacets ? List.of("pitaka", "layer", "book") : List.of());
+		final Object[] results = isearcher.search(query, new MultiCollectorManager(topManager, facetManager));
+		final ScoreDoc[] scoreDocs = ((TopDocs)results[0]).scoreDocs;
+		final FacetCollector facetCollector = (FacetCollector)results[1];
+		// find which fields each hit matches
+		final Weight weight = isearcher.createWeight(fieldQuery, ScoreMode.COMPLETE_NO_SCORES, 1);
+		final List<LeafReaderContext> leaves = isearcher.getIndexReader().leaves();
+		final List<SearchOutput> outputList = new ArrayList<>();
+		for(final ScoreDoc sd : scoreDocs) {
+			final LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(sd.doc, leaves));
+			final int leafDoc = sd.doc - leaf.docBase;
+			final Matches matches = weight.matches(leaf, leafDoc);
+			final List<CSCDTermInfo.Field> matchedFields = new ArrayList<>();
+			if(matches != null) {
+				for(final String name : matches) {
+					if(!name.endsWith(suffix)) continue;
+					final String tag = name.substring(0, name.length() - suffix.length());
+					if(CSCDTermInfo.Field.isValid(tag))
+						matchedFields.add(CSCDTermInfo.Field.valueOf(tag.toUpperCase()));
+				}
+			}
+			// strongest field first
+			matchedFields.sort((x, y) -> Float.compare(getFieldBoost(y), getFieldBoost(x)));
+			final String path = byParagraph ? getDocValue(leaf, "path", leafDoc) : "";
+			final String paraNum = byParagraph ? getDocValue(leaf, "paranum", leafDoc) : "";
+			final String source = sourceLabels[ReaderUtil.subIndex(sd.doc, docStarts)];
+			outputList.add(new SearchOutput(matchedFields, sd, path, paraNum, source));
+		}
+		return new CachedSearch(maxHits, queryMap, outputList, facetCollector.getCounts());
+	}
+
+	/**
+	 * Makes a span query of the words in the query string, within slop words apart,
+	 * in the given order or not. The words are analyzed as the field is, so a word may give
+	 * several terms at the same position (e.g., its lemmas), which are taken as alternatives.
+	 * Wildcard words are expanded from the index. Null is returned if no term remains.
+	 */
+	private static SpanQuery buildSpanQuery(final String field, final String strQuery, final Analyzer analyzer,
+											final int slop, final boolean inOrder) throws IOException {
+		final List<SpanQuery> clauses = new ArrayList<>();
+		for(final String word : strQuery.split("\\s+")) {
+			if(word.indexOf('*') >= 0 || word.indexOf('?') >= 0) {
+				final String pattern = word.replaceAll("[^\\p{L}\\p{N}*?]", "");
+				if(pattern.isEmpty() || pattern.charAt(0) == '*' || pattern.charAt(0) == '?') continue;
+				final WildcardQuery wildcard = new WildcardQuery(new Term(field, analyzer.normalize(field, pattern)));
+				clauses.add(new SpanMultiTermQueryWrapper<>(wildcard));
+				continue;
+			}
+			try(final TokenStream stream = analyzer.tokenStream(field, word)) {
+				final CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+				final PositionIncrementAttribute posIncAtt = stream.addAttribute(PositionIncrementAttribute.class);
+				List<SpanQuery> alternatives = new ArrayList<>();
+				stream.reset();
+				while(stream.incrementToken()) {
+					if(posIncAtt.getPositionIncrement() > 0 && !alternatives.isEmpty()) {
+						clauses.add(toSpanOr(alternatives));
+						alternatives = new ArrayList<>();
+					}
+					alternatives.add(new SpanTermQuery(new Term(field, termAtt.toString())));
+				}
+				stream.end();
+				if(!alternatives.isEmpty())
+					clauses.add(toSpanOr(alternatives));
+			}
+		}
+		if(clauses.isEmpty())
+			return null;
+		return clauses.size() == 1 ? clauses.get(0) : new SpanNearQuery(clauses.toArray(new SpanQuery[0]), slop, inOrder);
+	}
+
+	private static SpanQuery toSpanOr(final List<SpanQuery> alternatives) {
+		return alternatives.size() == 1 ? alternatives.get(0) : new SpanOrQuery(alternatives.toArray(new SpanQuery[0]));
+	}
+
+	private static boolean hasShadowFields(final FieldInfos fieldInfos, final String suffix) {
+		for(final FieldInfo fi : fieldInfos) {
+			if(fi.name.endsWith(suffix))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the value of an option in the index options, or an empty string if not found.
+	 */
+	private static String getOptionValue(final String indexOptions, final String key) {
+		if(indexOptions == null) return "";
+		for(final String opt : indexOptions.split(";")) {
+			final int eqInd = opt.indexOf('=');
+			if(eqInd > 0 && opt.substring(0, eqInd).equals(key))
+				return opt.substring(eqInd + 1);
+		}
+		return "";
+	}
+
+	/**
+	 * Returns the boost of a field in a multi-field query. Hits in headings
+	 * count more than those in the body, notes and boldface count less.
+	 */
+	private static float getFieldBoost(final CSCDTermInfo.Field field) {
+		final float result;
+		switch(field) {
+			case NIKAYA:
+			case BOOK:
+			case CHAPTER:
+			case TITLE:
+				result = 2.0f;
+				break;
+			case SUBHEAD:
+			case SUBSUBHEAD:
+				result = 1.5f;
+				break;
+			case NOTE:
+			case BOLD:
+				result = 0.5f;
+				break;
+			default:
+				result = 1.0f;
+		}
+		return result;
+	}
+
+	private static String getDocValue(final LeafReaderContext leaf, final String field, final int leafDoc) throws IOException {
+		final SortedDocValues values = leaf.reader().getSortedDocValues(field);
+		if(values == null || !values.advanceExact(leafDoc))
+			return "";
+		return values.lookupOrd(values.ordValue()).utf8ToString();
+	}
+
+	private void prepareSearchResult(final List<List<SearchOutput>> groupList, final Map<CSCDTermInfo.Field, Query> queryMap,
+									final IndexSearcher isearcher, final SearchParams params, final PaliIndexAnalyzer.FieldKind kind,
+									final List<SearchResultItem> resultList) {
+		final String strQuery = params.strQuery;
+		final List<SearchOutput> outputList = groupList.stream().flatMap(List::stream).collect(Collectors.toList());
+		final Map<SearchOutput, Map<CSCDTermInfo.Field, String>> fragmentMap = new HashMap<>();
 		try {
-			if(showSearchDetailButton.isSelected()) {
-				// prepare text of each result
-				final SAXParserFactory spf = SAXParserFactory.newInstance();
-				final SAXParser saxParser = spf.newSAXParser();
-				final ZipFile zip = new ZipFile(new File(Utilities.ROOTDIR + Utilities.COLLPATH + Utilities.CSCD_ZIP));
-				for(final SearchOutput so : outputList) {
-					final int docID = so.getDocID();
-					if(!resultTextMap.containsKey(docID)) {
-						final Map<CSCDTermInfo.Field, StringBuilder> textMap = new EnumMap<>(CSCDTermInfo.Field.class);
-						for(final CSCDTermInfo.Field fld : CSCDTermInfo.Field.values())
-							textMap.put(fld, new StringBuilder());
-						final DefaultHandler handler = new CSCDTermInfoSAXHandler(textMap);
-						final String filename = ireader.document(docID).get("path");
-						final ZipEntry entry = zip.getEntry(Utilities.CSCD_DIR + filename);
-						if(entry != null)
-							saxParser.parse(zip.getInputStream(entry), handler);
-						resultTextMap.put(docID, textMap);
+			if(params.showDetail && !params.showWholeLine) {
+				// make fragments from the stored texts and term vectors, one call for each field
+				final UnifiedHighlighter highlighter;
+				if(kind != PaliIndexAnalyzer.FieldKind.EXACT) {
+					// shadow fields have no stored texts and term vectors, so the stored text is
+					// analyzed again as the shadow field, and the terms of the shadow field are matched
+					highlighter = new UnifiedHighlighter(UnifiedHighlighter.builder(isearcher, new PaliIndexAnalyzer(true, null, kind))
+															.withFieldMatcher(name -> true)
+															.withMaxLength(MAX_HIGHLIGHT_LENGTH)
+															.withMaxNoHighlightPassages(0)
+															.withFormatter(new FragmentFormatter())) {
+						@Override
+						protected OffsetSource getOffsetSource(final String field) {
+							return OffsetSource.ANALYSIS;
+						}
+					};
+				} else {
+					highlighter = UnifiedHighlighter.builder(isearcher, new PaliIndexAnalyzer())
+										.withMaxLength(MAX_HIGHLIGHT_LENGTH)
+										.withMaxNoHighlightPassages(0)
+										.withFormatter(new FragmentFormatter())
+										.build();
+				}
+				for(final Map.Entry<CSCDTermInfo.Field, Query> entry : queryMap.entrySet()) {
+					final String tag = entry.getKey().getTag();
+					final List<SearchOutput> fieldList = outputList.stream()
+															.filter(x -> x.getFields().contains(entry.getKey()))
+															.collect(Collectors.toList());
+					if(fieldList.isEmpty()) continue;
+					final int[] docIDs = fieldList.stream().mapToInt(SearchOutput::getDocID).toArray();
+					final String[] frags = highlighter.highlightFields(new String[] { tag }, entry.getValue(),
+																	docIDs, new int[] { MAX_FRAGMENTS }).get(tag);
+					for(int i = 0; i < frags.length; i++) {
+						if(frags[i] != null && !frags[i].isEmpty())
+							fragmentMap.computeIfAbsent(fieldList.get(i), x -> new EnumMap<>(CSCDTermInfo.Field.class))
+										.put(entry.getKey(), frags[i]);
 					}
 				}
 			}
-			final Analyzer analyzer = new PaliIndexAnalyzer();
-			for(int i = 0; i < outputList.size(); i++) {       
-				if(i >= maxCount) break;
-				final SearchOutput soutput = outputList.get(i);
-				final String filename = ireader.document(soutput.getDocID()).get("path");
-				final String filecode = filename.substring(0, filename.lastIndexOf(".xml"));
-				final DocInfo docInfo = Utilities.docInfoMap.get(filecode);
-				if(docInfo == null) continue;
-				final String docInfoStr = docInfo.getFullTitleComma() + 
-										String.format(" [Score: %.4f] (%s)", soutput.getScore(), soutput.getField().getTag());
-				final TitledPane tpane;
-				if(showSearchDetailButton.isSelected()) {
+			SAXParser saxParser = null; // only for an index without stored texts
+			for(final List<SearchOutput> group : groupList) {
+				final SearchOutput head = group.get(0);
+				final Document headDoc = isearcher.doc(head.getDocID(), Set.of("path", "source"));
+				final String filename = headDoc.get("path");
+				final boolean isExtra = SOURCE_EXTRA.equals(headDoc.get("source"));
+				final DocInfo docInfo;
+				final String title;
+				if(isExtra) {
+					docInfo = null;
+					title = filename;
+				} else {
+					final String filecode = filename.substring(0, filename.lastIndexOf(".xml"));
+					docInfo = Utilities.docInfoMap.get(filecode);
+					if(docInfo == null) continue;
+					title = docInfo.getFullTitleComma();
+				}
+				final String fieldStr = group.stream().flatMap(x -> x.getFields().stream()).distinct()
+											.map(CSCDTermInfo.Field::getTag).collect(Collectors.joining(", "));
+				final String paraStr = head.getParaNum().isEmpty() && group.size() == 1 ? "" : " [Paragraphs: " + group.size() + "]";
+				final String sourceStr = head.getSource().isEmpty() ? "" : " [Index: " + head.getSource() + "]";
+				final String docInfoStr = title + sourceStr +
+										String.format(" [Score: %.4f]%s (%s)", head.getScore(), paraStr, fieldStr);
+				String resultStr = null;
+				if(params.showDetail) {
 					final StringBuilder resultText = new StringBuilder();
-					final String text = resultTextMap.get(soutput.getDocID()).get(soutput.getField()).toString()
-													.replaceAll(" {2,}", " ").replace(" .", ".").replace(" ,", ",").trim();
-					if(showWholeLineMenuItem.isSelected()) {
-						// use custom fragmenter
-						resultText.append(getFragmentManually(text, strQuery, true));
-					} else {
-						// use Lucene fragmenter
-						final QueryParser parser = new QueryParser(soutput.getField().getTag(), analyzer);
-						parser.setDefaultOperator(QueryParser.Operator.AND);
-						final Query query = parser.parse(strQuery);
-						final SimpleHTMLFormatter htmlFormatter = new SimpleHTMLFormatter("{", "}");
-						final Highlighter highlighter = new Highlighter(htmlFormatter, new QueryScorer(query));
-						final Fragmenter fragmenter = new SimpleFragmenter(100);
-						highlighter.setTextFragmenter(fragmenter);
-						final TokenStream tokenStream = analyzer.tokenStream(soutput.getField().getTag(), text);
-						final String[] frags = highlighter.getBestFragments(tokenStream, text, 10);
-						if(frags.length > 0) {
-							for(int j = 0; j < frags.length; j++) {
-								final String[] tmps = frags[j].split("\n");
-								for(final String s : tmps) {
-									if(s.contains("{")) {
-										resultText.append("» ").append(s).append("...\n");
-									}
+					for(final SearchOutput soutput : group) {
+						final Map<CSCDTermInfo.Field, String> fragments = fragmentMap.getOrDefault(soutput, Collections.emptyMap());
+						final Set<String> fieldsToLoad = new HashSet<>();
+						for(final CSCDTermInfo.Field f : soutput.getFields()) {
+							if(!fragments.containsKey(f))
+								fieldsToLoad.add(f.getTag());
+						}
+						final Document stored = fieldsToLoad.isEmpty() ? null : isearcher.doc(soutput.getDocID(), fieldsToLoad);
+						if(!soutput.getParaNum().isEmpty())
+							resultText.append("¶ ").append(soutput.getParaNum()).append("\n");
+						final boolean isMultiple = soutput.getFields().size() > 1;
+						for(final CSCDTermInfo.Field f : soutput.getFields()) {
+							String frag = fragments.get(f);
+							if(frag == null) {
+								String text = stored.get(f.getTag());
+								if(text == null) {
+									// the index is built by an older version, read the document instead
+									if(saxParser == null)
+										saxParser = SAXParserFactory.newInstance().newSAXParser();
+									text = readFieldText(saxParser, filename, isExtra, f);
 								}
+								// whole lines, or the highlighter finds nothing, use custom fragmenter
+								frag = getFragmentManually(text, strQuery, params.showWholeLine, params.keepCap, kind);
 							}
-						} else {
-							// highlighter fails, use custom fragmenter instead
-							resultText.append(getFragmentManually(text, strQuery, false));
+							if(isMultiple && !frag.isEmpty())
+								resultText.append("[").append(f.getTag()).append("]\n");
+							resultText.append(frag);
 						}
 					}
-					tpane = new TitledPane(docInfoStr, createTextFlow(resultText.toString()));
-					tpane.setExpanded(true);
-				} else {
-					tpane = new TitledPane(docInfoStr, null); 
-					tpane.setCollapsible(false);
+					resultStr = resultText.toString();
 				}
-				final TOCTreeNode ttn = new TOCTreeNode(docInfo.getTitle(0), filename, true, false, true);
-				tpane.setUserData(ttn);
-				tpane.setContextMenu(searchResultPopupMenu);
-				tpane.setOnContextMenuRequested(cmevent -> {
-					final TitledPane tp = (TitledPane)cmevent.getSource();
-					currSelectedDoc = (TOCTreeNode)tp.getUserData();
-				});
-				searchResultBox.getChildren().add(tpane);
+				final TOCTreeNode ttn = isExtra
+										? new TOCTreeNode(filename, filename, false, true, true)
+										: new TOCTreeNode(docInfo.getTitle(0), filename, true, false, true);
+				resultList.add(new SearchResultItem(docInfoStr, resultStr, ttn, head.getParaNum()));
 			}     
-		} catch(SAXException | ParserConfigurationException | ParseException | InvalidTokenOffsetsException | IOException e) {
+		} catch(SAXException | ParserConfigurationException | IOException e) {
 			System.err.println(e);
 		}
 	}
 
-	private String getFragmentManually(final String text, final String strQuery, final boolean isWholeLine) {
+	private String readFieldText(final SAXParser saxParser, final String filename, final boolean isExtra,
+								final CSCDTermInfo.Field field) throws SAXException, IOException {
+		final Map<CSCDTermInfo.Field, StringBuilder> textMap = new EnumMap<>(CSCDTermInfo.Field.class);
+		for(final CSCDTermInfo.Field fld : CSCDTermInfo.Field.values())
+			textMap.put(fld, new StringBuilder());
+		final InputStream in = isExtra ? openExtraFile(filename) : CorpusStore.INSTANCE.getInputStream(filename);
+		if(in != null) {
+			try(in) {
+				saxParser.parse(in, new CSCDTermInfoSAXHandler(textMap));
+			}
+		}
+		return cleanText(textMap.get(field).toString());
+	}
+
+	/**
+	 * Shows the hit counts of each piṭaka and layer, and of the top books.
+	 */
+	private void updateFacetInfo(final Map<String, Map<String, Integer>> facetMap) {
+		final List<String> facetList = new ArrayList<>();
+		facetMap.forEach((facet, counts) -> {
+			final String str = counts.entrySet().stream()
+										.sorted((x, y) -> Integer.compare(y.getValue(), x.getValue()))
+										.limit(facet.equals("book") ? MAX_BOOK_FACETS : counts.size())
+										.map(x -> getFacetName(facet, x.getKey()) + " " + x.getValue())
+										.collect(Collectors.joining(", "));
+			if(!str.isEmpty())
+				facetList.add(str);
+		});
+		facetLabel.setText(String.join(" | ", facetList));
+	}
+
+	private void updateSearchResult(final List<SearchResultItem> resultList) {
+		searchResultBox.getChildren().clear();
+		if(!resultList.isEmpty())
+			textInput.recordQuery();
+		for(final SearchResultItem item : resultList) {
+			final TitledPane tpane;
+			if(item.text != null) {
+				tpane = new TitledPane(item.title, createTextFlow(item.text));
+				tpane.setExpanded(true);
+			} else {
+				tpane = new TitledPane(item.title, null); 
+				tpane.setCollapsible(false);
+			}
+			tpane.setUserData(item);
+			tpane.setContextMenu(searchResultPopupMenu);
+			tpane.setOnContextMenuRequested(cmevent -> {
+				final TitledPane tp = (TitledPane)cmevent.getSource();
+				final SearchResultItem selected = (SearchResultItem)tp.getUserData();
+				currSelectedDoc = selected.node;
+				currSelectedParaNum = selected.paraNum;
+			});
+			searchResultBox.getChildren().add(tpane);
+		}
+	}
+
+	private String getFragmentManually(final String text, final String strQuery, final boolean isWholeLine,
+										final boolean keepCap, final PaliIndexAnalyzer.FieldKind kind) {
+		final boolean isFolded = kind == PaliIndexAnalyzer.FieldKind.FOLDED;
 		// (1) generate query word list (those need highlight)
 		final List<String> wlist = new ArrayList<>();
 		if(strQuery.charAt(0) == '/' && strQuery.charAt(strQuery.length()-1) == '/') {
@@ -669,21 +1731,41 @@ public class LuceneFinder extends SingletonWindow {
 					if(q.endsWith("AND") || q.endsWith("OR") || q.endsWith("NOT"))
 						continue;
 					wlist.add(q);
-					if(!keepCapMenuItem.isSelected() && !Character.isUpperCase(q.charAt(0)))
+					if((!keepCap || kind != PaliIndexAnalyzer.FieldKind.EXACT) && !Character.isUpperCase(q.charAt(0)))
 						wlist.add(Character.toUpperCase(q.charAt(0)) + q.substring(1));
 				} // end for
 			} // end if
 		} // end if
+		// for lemma search, the words having the same lemmas as the query words are marked
+		final Set<String> lemmaSet = new HashSet<>();
+		if(kind == PaliIndexAnalyzer.FieldKind.LEMMA) {
+			for(final String w : wlist) {
+				for(final String t : w.split("\\s+")) {
+					final String form = Utilities.replaceOldNiggahitaWithNew(t.toLowerCase());
+					lemmaSet.add(form);
+					lemmaSet.addAll(LemmaIndex.INSTANCE.getLemmas(form));
+				}
+			}
+		}
 		// (2) find the words' position line by line, then generate the string output
 		final StringBuilder result = new StringBuilder();
 		for(final String line : text.split("\n")) {
 			final Map<Integer, String> fragPosMap = new HashMap<>();
 			final String wb = "\\b";
-			for(final String s : wlist) {
-				final Pattern patt = Pattern.compile(wb + s);
-				final Matcher matcher = patt.matcher(line);
-				while(matcher.find())
-					fragPosMap.put(matcher.start(), matcher.group());
+			if(lemmaSet.isEmpty()) {
+				for(final String s : wlist) {
+					final Pattern patt = Pattern.compile(wb + (isFolded ? PaliIndexAnalyzer.toFoldedRegex(s) : s));
+					final Matcher matcher = patt.matcher(line);
+					while(matcher.find())
+						fragPosMap.put(matcher.start(), matcher.group());
+				}
+			} else {
+				final Matcher matcher = WORD_PATTERN.matcher(line);
+				while(matcher.find()) {
+					final String form = Utilities.replaceOldNiggahitaWithNew(matcher.group().toLowerCase());
+					if(lemmaSet.contains(form) || LemmaIndex.INSTANCE.getLemmas(form).stream().anyMatch(lemmaSet::contains))
+						fragPosMap.put(matcher.start(), matcher.group());
+				}
 			}
 			if(!fragPosMap.isEmpty()) {
 				final List<Integer> posList = new ArrayList<>(fragPosMap.keySet());
@@ -778,8 +1860,12 @@ public class LuceneFinder extends SingletonWindow {
 	}
 
 	private void openCurrentDoc() {
-		if(currSelectedDoc != null)
+		if(currSelectedDoc == null) return;
+		// jump to the best paragraph directly, if known
+		if(currSelectedParaNum.isEmpty())
 			PaliPlatform.openPaliHtmlViewer(currSelectedDoc);
+		else
+			PaliPlatform.openPaliHtmlViewer(currSelectedDoc, currSelectedParaNum);
 	}
 
 	private void addTermToSearch(final String term) {
@@ -802,7 +1888,7 @@ public class LuceneFinder extends SingletonWindow {
 
 	private String makeText() {
 		final StringBuilder result = new StringBuilder();
-		result.append("Index path: ").append(indexPath);
+		result.append("Index path: ").append(String.join(", ", getSearchPaths()));
 		result.append(System.getProperty("line.separator"));
 		result.append("Query: ").append(Normalizer.normalize(searchTextField.getText().trim(), Form.NFC));
 		result.append(System.getProperty("line.separator"));
@@ -833,51 +1919,260 @@ public class LuceneFinder extends SingletonWindow {
 	}
 
 	// inner classes
-	private class SearchOutput {
-		private final CSCDTermInfo.Field field;
-		private final int doc;
-		private final float score;
+	/**
+	 * The search options taken from the UI, so that the query can run off the FX thread.
+	 */
+	private class SearchParams {
+		private final String strQuery;
+		private final List<String> indexPaths;
+		private final int maxCount;
+		private final List<CSCDTermInfo.Field> fields = new ArrayList<>();
+		private final boolean showDetail;
+		private final boolean showWholeLine;
+		private final boolean keepCap;
+		private final boolean ignoreDiacritics;
+		private final boolean matchInflections;
+		private final String pitaka;
+		private final String layer;
+		private final String book;
+		private final Proximity proximity;
+		private final int slop;
 
-		private SearchOutput(final CSCDTermInfo.Field field, final ScoreDoc sdoc) {
-			this.field = field;
-			doc = sdoc.doc;
-			score = sdoc.score;
+		private SearchParams(final String strQuery) {
+			this.strQuery = strQuery;
+			indexPaths = getSearchPaths();
+			maxCount = maxResultChoice.getSelectionModel().getSelectedItem();
+			for(final CSCDTermInfo.Field f : CSCDTermInfo.Field.values()) {
+				if(fieldOptionsBox.isFieldSelected(f))
+					fields.add(f);
+			}
+			showDetail = showSearchDetailButton.isSelected();
+			showWholeLine = showWholeLineMenuItem.isSelected();
+			keepCap = keepCapMenuItem.isSelected();
+			ignoreDiacritics = ignoreDiacriticsMenuItem.isSelected();
+			matchInflections = matchInflectionsMenuItem.isSelected();
+			pitaka = PITAKA_CODES[Math.max(0, pitakaChoice.getSelectionModel().getSelectedIndex())];
+			layer = LAYER_CODES[Math.max(0, layerChoice.getSelectionModel().getSelectedIndex())];
+			final String bookStr = bookChoice.getValue();
+			book = bookStr == null || bookStr.equals(ALL_BOOKS) ? "" : getBookCode(bookStr.split(":")[0]);
+			proximity = proximityChoice.getValue();
+			slop = slopChoice.getValue();
 		}
+	}
 
-		private CSCDTermInfo.Field getField() {
-			return field;
+	/**
+	 * Counts all hits by the values of some doc-values fields, e.g., piṭaka and layer.
+	 * The counts are kept by ordinal for each segment, and turned into values at the end.
+	 */
+	private static class FacetCollector extends SimpleCollector {
+		private final List<String> facets;
+		private final Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+		private final SortedDocValues[] values;
+		private final int[][] ordCounts;
+
+		private FacetCollector(final List<String> facets) {
+			this.facets = facets;
+			values = new SortedDocValues[facets.size()];
+			ordCounts = new int[facets.size()][];
+			for(final String f : facets)
+				counts.put(f, new HashMap<>());
 		}
 
-		private int getDocID() {
-			return doc;
+		@Override
+		protected void doSetNextReader(final LeafReaderContext context) throws IOException {
+			flush();
+			for(int i = 0; i < facets.size(); i++) {
+				values[i] = context.reader().getSortedDocValues(facets.get(i));
+				ordCounts[i] = values[i] == null ? null : new int[values[i].getValueCount()];
+			}
 		}
 
-		private float getScore() {
-			return score;
+		@Override
+		public void collect(final int doc) throws IOException {
+			for(int i = 0; i < values.length; i++) {
+				if(values[i] != null && values[i].advanceExact(doc))
+					ordCounts[i][values[i].ordValue()]++;
+			}
+		}
+
+		@Override
+		public ScoreMode scoreMode() {
+			return ScoreMode.COMPLETE_NO_SCORES;
+		}
+
+		private void flush() throws IOException {
+			for(int i = 0; i < values.length; i++) {
+				if(values[i] == null) continue;
+				final Map<String, Integer> facetCounts = counts.get(facets.get(i));
+				for(int ord = 0; ord < ordCounts[i].length; ord++) {
+					if(ordCounts[i][ord] > 0)
+						facetCounts.merge(values[i].lookupOrd(ord).utf8ToString(), ordCounts[i][ord], Integer::sum);
+				}
+				values[i] = null;
+			}
+		}
+
+		private Map<String, Map<String, Integer>> getCounts() throws IOException {
+			flush();
+			return counts;
+		}
+
+		private void merge(final FacetCollector other) throws IOException {
+			other.getCounts().forEach((facet, facetCounts) ->
+				facetCounts.forEach((value, n) -> counts.get(facet).merge(value, n, Integer::sum)));
 		}
 	}
 
-	public class PaliIndexAnalyzer extends Analyzer {
+	/**
+	 * Makes a FacetCollector for each slice searched, and merges their counts at the end.
+	 */
+	private static class FacetCollectorManager implements CollectorManager<FacetCollector, FacetCollector> {
+		private final List<String> facets;
 
-	public PaliIndexAnalyzer () {
+		private FacetCollectorManager(final List<String> facets) {
+			this.facets = facets;
+		}
+
+		@Override
+		public FacetCollector newCollector() {
+			return new FacetCollector(facets);
+		}
+
+		@Override
+		public FacetCollector reduce(final Collection<FacetCollector> collectors) throws IOException {
+			final FacetCollector result = new FacetCollector(facets);
+			for(final FacetCollector fc : collectors)
+				result.merge(fc);
+			return result;
+		}
 	}
 
-	@Override
-	public TokenStreamComponents createComponents(final String fieldName) {
-		return new TokenStreamComponents(new PaliTokenizer());
+	private static class SearchResultItem {
+		private final String title;
+		private final String text; // null if no detail shown
+		private final TOCTreeNode node;
+		private final String paraNum; // the best paragraph, empty if not known
+
+		private SearchResultItem(final String title, final String text, final TOCTreeNode node, final String paraNum) {
+			this.title = title;
+			this.text = text;
+			this.node = node;
+			this.paraNum = paraNum;
+		}
 	}
 
-	private class PaliTokenizer extends CharTokenizer {
-		public PaliTokenizer() {
+	/**
+	 * The raw content of a document, passed from the reader to the parse workers.
+	 */
+	private static class RawDoc {
+		private static final RawDoc END = new RawDoc("", new byte[0], 0, false);
+		private final String name;
+		private final byte[] content;
+		private final long crc;
+		private final boolean isExtra;
+
+		private RawDoc(final String name, final byte[] content, final long crc, final boolean isExtra) {
+			this.name = name;
+			this.content = content;
+			this.crc = crc;
+			this.isExtra = isExtra;
 		}
+	}
+
+	/**
+	 * Formats the highlighted passages as lines of fragments, with hits marked by {}.
+	 */
+	private static class FragmentFormatter extends PassageFormatter {
 		@Override
-		protected boolean isTokenChar(final int c) {
-			boolean isToken = false;
-			isToken |= Character.isDigit(c);
-			isToken |= Character.isLetter(c);
-			isToken |= Utilities.PALI_ALL_CHARS.indexOf(c) != -1;
-			return isToken;
+		public Object format(final Passage[] passages, final String content) {
+			final StringBuilder result = new StringBuilder();
+			for(final Passage p : passages) {
+				result.append("» ");
+				int pos = p.getStartOffset();
+				for(int i = 0; i < p.getNumMatches(); i++) {
+					final int start = p.getMatchStarts()[i];
+					final int end = p.getMatchEnds()[i];
+					if(start < pos) continue; // overlapped
+					appendFlat(result, content, pos, start);
+					result.append("{");
+					appendFlat(result, content, start, end);
+					result.append("}");
+					pos = end;
+				}
+				appendFlat(result, content, pos, p.getEndOffset());
+				result.append("...\n");
+			}
+			return result.toString();
+		}
+
+		private static void appendFlat(final StringBuilder result, final String content, final int start, final int end) {
+			for(int i = start; i < end; i++) {
+				final char ch = content.charAt(i);
+				result.append(ch == '\n' ? ' ' : ch);
+			}
+		}
+	}
+
+	/**
+	 * The hits of a query, with the fields matched and the facet counts, kept in the result cache.
+	 * The results rendered from them are also kept, one for each set of display options.
+	 */
+	private static class CachedSearch {
+		private final int maxHits;
+		private final Map<CSCDTermInfo.Field, Query> queryMap;
+		private final List<SearchOutput> outputList;
+		private final Map<String, Map<String, Integer>> facetMap;
+		private final Map<String, List<SearchResultItem>> renderedMap = new ConcurrentHashMap<>();
+
+		private CachedSearch(final int maxHits, final Map<CSCDTermInfo.Field, Query> queryMap,
+							final List<SearchOutput> outputList, final Map<String, Map<String, Integer>> facetMap) {
+			this.maxHits = maxHits;
+			this.queryMap = queryMap;
+			this.outputList = outputList;
+			this.facetMap = facetMap;
+		}
+	}
+
+	private static class SearchOutput {
+		private final List<CSCDTermInfo.Field> fields;
+		private final int doc;
+		private final float score;
+		private final String path;
+		private final String paraNum;
+		private final String source; // the index name, empty if only one is searched
+
+		private SearchOutput(final List<CSCDTermInfo.Field> fields, final ScoreDoc sdoc, final String path, final String paraNum,
+							final String source) {
+			this.fields = fields;
+			doc = sdoc.doc;
+			score = sdoc.score;
+			this.path = path;
+			this.paraNum = paraNum;
+			this.source = source;
+		}
+
+		private String getPath() {
+			return path;
+		}
+
+		private String getParaNum() {
+			return paraNum;
+		}
+
+		private List<CSCDTermInfo.Field> getFields() {
+			return fields;
+		}
+
+		private int getDocID() {
+			return doc;
+		}
+
+		private float getScore() {
+			return score;
+		}
+
+		private String getSource() {
+			return source;
 		}
 	}
-}
 }
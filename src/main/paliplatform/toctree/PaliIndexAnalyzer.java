@@ -0,0 +1,297 @@
+/*
+ * PaliIndexAnalyzer.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform.toctree;
+
+import paliplatform.*;
+import paliplatform.grammar.LemmaIndex;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.*;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.FilteringTokenFilter;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.util.CharTokenizer;
+
+/**
+ * The analyzer of Pāli text used by LuceneFinder, for both indexing and searching.
+ * The chain is: tokenizer (Pāli letters and digits) > lowercase (unless capitalized
+ * terms are kept) > old niggahita (ŋ) to new (ṃ) > exclusion (stopwords, numbers,
+ * short words) > diacritic folding. The folding is done only for the shadow fields,
+ * whose names end with FOLDED_SUFFIX. A nasal before a guttural, palatal, cerebral, or dental
+ * stop is folded to n, so "samgha", "saṃgha", and "saṅgha" give the same term, and
+ * can be found by a plain term lookup. In the lemma fields, whose names end with LEMMA_SUFFIX,
+ * each term is replaced by its lemmas found in LemmaIndex (stacked at the same position),
+ * so any inflected form finds the others. Folded and lemma fields are always lowercased.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.0
+ */
+public class PaliIndexAnalyzer extends Analyzer {
+	public static enum FieldKind {
+		EXACT, FOLDED, LEMMA;
+		public static FieldKind of(final String fieldName) {
+			final FieldKind result;
+			if(fieldName.endsWith(FOLDED_SUFFIX))
+				result = FOLDED;
+			else if(fieldName.endsWith(LEMMA_SUFFIX))
+				result = LEMMA;
+			else
+				result = EXACT;
+			return result;
+		}
+	}
+	public static final String FOLDED_SUFFIX = "_folded";
+	public static final String LEMMA_SUFFIX = "_lemma";
+	private static final String FOLDED_CHARS = "NAIMSUDHLLMNNRRSTnaimsudhllmnnrrst";
+	private static final String NASAL_STOPS = "kgcjtdKGCJTD";
+	private static final Map<Character, Character> foldMap = new HashMap<>();
+	private static final Map<Character, String> variantMap = new HashMap<>();
+	private final boolean keepCap;
+	private final Predicate<String> exclusion;
+	private final FieldKind forcedKind;
+
+	static {
+		for(int i = 0; i < Utilities.PALI_ALL_CHARS.length(); i++) {
+			final char ch = Utilities.PALI_ALL_CHARS.charAt(i);
+			final char base = FOLDED_CHARS.charAt(i);
+			foldMap.put(ch, base);
+			variantMap.merge(base, "" + ch, String::concat);
+		}
+	}
+
+	/**
+	 * Creates the analyzer for queries, the terms are taken as they are.
+	 */
+	public PaliIndexAnalyzer() {
+		this(true, null, null);
+	}
+
+	public PaliIndexAnalyzer(final boolean keepCap, final Predicate<String> exclusion) {
+		this(keepCap, exclusion, null);
+	}
+
+	/**
+	 * @param keepCap do not lowercase the terms, except in folded fields
+	 * @param exclusion the condition of the terms to remove, or null
+	 * @param forcedKind analyze every field as this kind, or null to decide by the field name
+	 * (used for highlighting the exact fields with the terms of the others)
+	 */
+	public PaliIndexAnalyzer(final boolean keepCap, final Predicate<String> exclusion, final FieldKind forcedKind) {
+		this.keepCap = keepCap;
+		this.exclusion = exclusion;
+		this.forcedKind = forcedKind;
+	}
+
+	private FieldKind getKind(final String fieldName) {
+		return forcedKind == null ? FieldKind.of(fieldName) : forcedKind;
+	}
+
+	@Override
+	protected TokenStreamComponents createComponents(final String fieldName) {
+		final FieldKind kind = getKind(fieldName);
+		final Tokenizer tokenizer = new PaliTokenizer();
+		TokenStream stream = tokenizer;
+		if(!keepCap || kind != FieldKind.EXACT)
+			stream = new LowerCaseFilter(stream);
+		stream = new NiggahitaFilter(stream);
+		if(exclusion != null)
+			stream = new ExclusionFilter(stream, exclusion);
+		if(kind == FieldKind.FOLDED)
+			stream = new FoldingFilter(stream);
+		else if(kind == FieldKind.LEMMA)
+			stream = new LemmaFilter(stream);
+		return new TokenStreamComponents(tokenizer, stream);
+	}
+
+	@Override
+	protected TokenStream normalize(final String fieldName, final TokenStream in) {
+		// used for wildcard, prefix, and regex terms, which are not tokenized
+		final FieldKind kind = getKind(fieldName);
+		TokenStream stream = in;
+		if(!keepCap || kind != FieldKind.EXACT)
+			stream = new LowerCaseFilter(stream);
+		stream = new NiggahitaFilter(stream);
+		if(kind == FieldKind.FOLDED)
+			stream = new FoldingFilter(stream);
+		return stream;
+	}
+
+	/**
+	 * Removes the diacritics of Pāli letters, e.g., ā to a, ṃ and ŋ to m.
+	 */
+	public static String fold(final String text) {
+		final char[] chars = text.toCharArray();
+		foldChars(chars, chars.length);
+		return new String(chars);
+	}
+
+	private static void foldChars(final char[] chars, final int length) {
+		// the folded chars are all in BMP, one char each, so fold in place
+		for(int i = 0; i < length; i++) {
+			final Character base = foldMap.get(chars[i]);
+			if(base != null)
+				chars[i] = base;
+		}
+		for(int i = 0; i < length - 1; i++) {
+			if(isNasalBeforeStop(chars[i], chars[i + 1]))
+				chars[i] = Character.isUpperCase(chars[i]) ? 'N' : 'n';
+		}
+	}
+
+	private static boolean isNasalBeforeStop(final char ch, final char next) {
+		return (ch == 'm' || ch == 'M') && NASAL_STOPS.indexOf(next) >= 0;
+	}
+
+	/**
+	 * Converts a regex of plain letters into one ignoring the diacritics,
+	 * e.g., "sāmi" to "s[aā][mŋṃ][iī]". Escaped characters are left as they are.
+	 */
+	public static String toFoldedRegex(final String regex) {
+		final StringBuilder result = new StringBuilder();
+		for(int i = 0; i < regex.length(); i++) {
+			final char ch = regex.charAt(i);
+			if(ch == '\\' && i + 1 < regex.length()) {
+				result.append(ch).append(regex.charAt(++i));
+				continue;
+			}
+			final char base = foldMap.getOrDefault(ch, ch);
+			final char next = i + 1 < regex.length() ? foldMap.getOrDefault(regex.charAt(i + 1), regex.charAt(i + 1)) : ' ';
+			final String variants = variantMap.get(base);
+			if(variants == null) {
+				result.append(ch);
+			} else if((base == 'm' || base == 'n') && NASAL_STOPS.indexOf(next) >= 0) {
+				result.append("[mn").append(variantMap.get('m')).append(variantMap.get('n')).append(']');
+			} else if((base == 'M' || base == 'N') && NASAL_STOPS.indexOf(next) >= 0) {
+				result.append("[MN").append(variantMap.get('M')).append(variantMap.get('N')).append(']');
+			} else {
+				result.append('[').append(base).append(variants).append(']');
+			}
+		}
+		return result.toString();
+	}
+
+	// inner classes
+	private static class PaliTokenizer extends CharTokenizer {
+		@Override
+		protected boolean isTokenChar(final int c) {
+			boolean isToken = false;
+			isToken |= Character.isDigit(c);
+			isToken |= Character.isLetter(c);
+			isToken |= Utilities.PALI_ALL_CHARS.indexOf(c) != -1;
+			return isToken;
+		}
+	}
+
+	private static class NiggahitaFilter extends TokenFilter {
+		private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+		private NiggahitaFilter(final TokenStream input) {
+			super(input);
+		}
+
+		@Override
+		public boolean incrementToken() throws IOException {
+			if(!input.incrementToken()) return false;
+			final String term = termAtt.toString();
+			if(term.indexOf('ŋ') >= 0 || term.indexOf('Ŋ') >= 0)
+				termAtt.setEmpty().append(Utilities.replaceOldNiggahitaWithNew(term));
+			return true;
+		}
+	}
+
+	private static class FoldingFilter extends TokenFilter {
+		private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+		private FoldingFilter(final TokenStream input) {
+			super(input);
+		}
+
+		@Override
+		public boolean incrementToken() throws IOException {
+			if(!input.incrementToken()) return false;
+			foldChars(termAtt.buffer(), termAtt.length());
+			return true;
+		}
+	}
+
+	/**
+	 * Replaces each term by its lemmas, the first one in place, the others at the same position.
+	 * Unknown terms are left as they are.
+	 */
+	private static class LemmaFilter extends TokenFilter {
+		private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+		private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+		private final Deque<String> pending = new ArrayDeque<>();
+		private State state = null;
+
+		private LemmaFilter(final TokenStream input) {
+			super(input);
+		}
+
+		@Override
+		public boolean incrementToken() throws IOException {
+			if(!pending.isEmpty()) {
+				restoreState(state);
+				termAtt.setEmpty().append(pending.poll());
+				posIncAtt.setPositionIncrement(0);
+				return true;
+			}
+			if(!input.incrementToken()) return false;
+			final List<String> lemmas = LemmaIndex.INSTANCE.getLemmas(termAtt.toString());
+			if(!lemmas.isEmpty()) {
+				termAtt.setEmpty().append(lemmas.get(0));
+				if(lemmas.size() > 1) {
+					pending.addAll(lemmas.subList(1, lemmas.size()));
+					state = captureState();
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			pending.clear();
+			state = null;
+		}
+	}
+
+	private static class ExclusionFilter extends FilteringTokenFilter {
+		private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+		private final Predicate<String> exclusion;
+
+		private ExclusionFilter(final TokenStream input, final Predicate<String> exclusion) {
+			super(input);
+			this.exclusion = exclusion;
+		}
+
+		@Override
+		protected boolean accept() {
+			return !exclusion.test(termAtt.toString());
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * QueryResultCache.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform.toctree;
+
+import java.util.*;
+
+/**
+ * The LRU cache of query results, used by LuceneFinder. An entry is keyed by
+ * the index paths searched, the generations (versions) of their readers, and the query key
+ * given by the caller. Since document IDs are valid only for one reader,
+ * the entries of an index are dropped when its searcher is refreshed or closed.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+class QueryResultCache<V> {
+	private static final String PATH_DELIM = "\t";
+	private final int maxEntries;
+	private final LinkedHashMap<String, V> entryMap = new LinkedHashMap<>(16, 0.75f, true);
+
+	QueryResultCache(final int maxEntries) {
+		this.maxEntries = maxEntries;
+		SearcherRegistry.INSTANCE.addRefreshListener(this::invalidate);
+	}
+
+	private static String makeKey(final List<String> indexPaths, final String generation, final String queryKey) {
+		final StringBuilder result = new StringBuilder();
+		for(final String path : indexPaths)
+			result.append(SearcherRegistry.normalize(path)).append(PATH_DELIM);
+		return result.append("\n").append(generation).append("\n").append(queryKey).toString();
+	}
+
+	synchronized V get(final List<String> indexPaths, final String generation, final String queryKey) {
+		return entryMap.get(makeKey(indexPaths, generation, queryKey));
+	}
+
+	synchronized void put(final List<String> indexPaths, final String generation, final String queryKey, final V value) {
+		entryMap.put(makeKey(indexPaths, generation, queryKey), value);
+		// evict the least recently used ones
+		final Iterator<String> it = entryMap.keySet().iterator();
+		while(entryMap.size() > maxEntries && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Drops all entries of an index (given as a normalized path), or all if the path is null.
+	 */
+	synchronized void invalidate(final String normalizedPath) {
+		if(normalizedPath == null)
+			entryMap.clear();
+		else
+			entryMap.keySet().removeIf(x -> (PATH_DELIM + x.substring(0, x.indexOf('\n'))).contains(PATH_DELIM + normalizedPath + PATH_DELIM));
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * SearcherRegistry.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform.toctree;
+
+import java.util.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+/**
+ * The registry of long-lived Lucene searchers, one SearcherManager per index directory.
+ * A searcher is opened at the first use and shared by later queries, instead of
+ * reopening the index for every query. Every acquired searcher must be released.
+ * Refresh listeners are told when a searcher sees a new commit, or is closed,
+ * so that anything derived from the old searcher can be dropped.
+ * This is a singleton.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+public class SearcherRegistry {
+	public static final SearcherRegistry INSTANCE = new SearcherRegistry();
+	private final Map<String, ManagedIndex> indexMap = new HashMap<>();
+	private final List<Consumer<String>> refreshListeners = new CopyOnWriteArrayList<>();
+
+	private SearcherRegistry() {
+	}
+
+	static String normalize(final String indexPath) {
+		return Path.of(indexPath).toAbsolutePath().normalize().toString();
+	}
+
+	private synchronized ManagedIndex getManagedIndex(final String indexPath) throws IOException {
+		final String key = normalize(indexPath);
+		ManagedIndex result = indexMap.get(key);
+		if(result == null) {
+			final Directory directory = FSDirectory.open(Path.of(key));
+			try {
+				result = new ManagedIndex(directory, new SearcherManager(directory, null));
+				result.manager.addListener(new ReferenceManager.RefreshListener() {
+					@Override
+					public void beforeRefresh() {
+					}
+
+					@Override
+					public void afterRefresh(final boolean didRefresh) {
+						if(didRefresh)
+							notifyRefresh(key);
+					}
+				});
+			} catch(IOException e) {
+				directory.close();
+				throw e;
+			}
+			indexMap.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Adds a listener called with the normalized index path, when the index has
+	 * a new searcher or is closed (null if all are closed).
+	 */
+	public void addRefreshListener(final Consumer<String> listener) {
+		refreshListeners.add(listener);
+	}
+
+	private void notifyRefresh(final String normalizedPath) {
+		refreshListeners.forEach(x -> x.accept(normalizedPath));
+	}
+
+	/**
+	 * Acquires the current searcher of the index, opening it if needed.
+	 * The searcher has to be returned by release().
+	 */
+	public IndexSearcher acquire(final String indexPath) throws IOException {
+		return getManagedIndex(indexPath).manager.acquire();
+	}
+
+	public void release(final String indexPath, final IndexSearcher searcher) {
+		if(searcher == null) return;
+		try {
+			final ManagedIndex mi;
+			synchronized(this) {
+				mi = indexMap.get(normalize(indexPath));
+			}
+			if(mi != null)
+				mi.manager.release(searcher);
+			else
+				searcher.getIndexReader().decRef();
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+	}
+
+	/**
+	 * Makes the next acquired searcher see the latest commit of the index, if opened.
+	 */
+	public void refresh(final String indexPath) {
+		final ManagedIndex mi;
+		synchronized(this) {
+			mi = indexMap.get(normalize(indexPath));
+		}
+		if(mi == null) return;
+		try {
+			mi.manager.maybeRefreshBlocking();
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+	}
+
+	/**
+	 * Closes the searcher of the index, e.g., before the index directory is cleared.
+	 * Searchers still in use are closed when released.
+	 */
+	public void close(final String indexPath) {
+		final String key = normalize(indexPath);
+		final ManagedIndex mi;
+		synchronized(this) {
+			mi = indexMap.remove(key);
+		}
+		if(mi != null) {
+			mi.close();
+			notifyRefresh(key);
+		}
+	}
+
+	public void closeAll() {
+		final List<ManagedIndex> miList;
+		synchronized(this) {
+			miList = new ArrayList<>(indexMap.values());
+			indexMap.clear();
+		}
+		miList.forEach(ManagedIndex::close);
+		notifyRefresh(null);
+	}
+
+	// inner classes
+	private static class ManagedIndex {
+		private final Directory directory;
+		private final SearcherManager manager;
+
+		private ManagedIndex(final Directory directory, final SearcherManager manager) {
+			this.directory = directory;
+			this.manager = manager;
+		}
+
+		private void close() {
+			try {
+				manager.close();
+				directory.close();
+			} catch(IOException e) {
+				System.err.println(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * TermCache.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform.toctree;
+
+import paliplatform.*;
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * The disk cache of the terms of documents, with their positions, used by Tokenizer
+ * to skip parsing and tokenizing the documents processed before. An entry is keyed
+ * by the document's name and its source stamp (CRC and size, or time and size for
+ * extra documents), so a changed document is read again, and its outdated entry
+ * is replaced. The entries are loaded by memory mapping. This is a singleton.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+public class TermCache {
+	public static final TermCache INSTANCE = new TermCache();
+	private static final int MAGIC = 0x50505443; // "PPTC"
+	private static final int VERSION = 1;
+	private static final String SUFFIX = ".terms";
+	private static final CSCDTermInfo.Field[] FIELDS = CSCDTermInfo.Field.values();
+
+	private TermCache() {
+	}
+
+	private File getDiskDir() {
+		return new File(Utilities.ROOTDIR + Utilities.CACHEPATH + Utilities.TERMCACHE);
+	}
+
+	/**
+	 * Returns the source stamp of a document, or an empty string if it is not found.
+	 */
+	public String getStamp(final TOCTreeNode ttn) {
+		if(ttn.isInArchive())
+			return CorpusStore.INSTANCE.getEntryStamp(ttn.getFileName());
+		final File file = new File(Utilities.EXTRAPATH + ttn.getFileName());
+		return file.exists() ? file.lastModified() + "-" + file.length() : "";
+	}
+
+	/**
+	 * Converts a document name to a name safe for the file system,
+	 * extra documents may be in sub-directories.
+	 */
+	private static String getSafeName(final String docName) {
+		return docName.replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+
+	private File getDiskFile(final String docName, final String stamp) {
+		final String hash = Utilities.MD5Sum(VERSION + ":" + stamp);
+		return new File(getDiskDir(), getSafeName(docName) + "~" + hash + SUFFIX);
+	}
+
+	/**
+	 * Reads the terms of a document, or returns null if not found.
+	 * The term strings are taken from the dictionary.
+	 */
+	Map<String, CSCDTermInfo> load(final String docName, final String stamp, final TermDictionary dict) {
+		if(stamp.isEmpty()) return null;
+		final File file = getDiskFile(docName, stamp);
+		if(!file.exists()) return null;
+		Map<String, CSCDTermInfo> result = null;
+		boolean isInvalid = false;
+		try(final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				isInvalid = true;
+				return null;
+			}
+			final int termCount = buffer.getInt();
+			final int charCount = buffer.getInt();
+			final int entryCount = buffer.getInt();
+			final int postCount = buffer.getInt();
+			final long expected = 24L + charCount * 2L + (termCount * 2L + 1 + entryCount) * 4 + postCount * 8L;
+			if(channel.size() != expected) {
+				isInvalid = true;
+				return null;
+			}
+			// term chars, term starts, field masks, posting counts of each field, and postings
+			final char[] chars = PackedArrays.getChars(buffer, charCount);
+			final int[] termStarts = PackedArrays.getInts(buffer, termCount + 1);
+			final int[] fieldMasks = PackedArrays.getInts(buffer, termCount);
+			final int[] counts = PackedArrays.getInts(buffer, entryCount);
+			final long[] postings = PackedArrays.getLongs(buffer, postCount);
+			final Map<String, CSCDTermInfo> termsMap = new HashMap<>(termCount * 2);
+			int entry = 0;
+			int post = 0;
+			for(int t = 0; t < termCount; t++) {
+				final String term = dict.intern(new String(chars, termStarts[t], termStarts[t + 1] - termStarts[t]));
+				final CSCDTermInfo info = new CSCDTermInfo(term);
+				for(int f = 0; f < FIELDS.length; f++) {
+					if((fieldMasks[t] & (1 << f)) == 0) continue;
+					final int count = counts[entry++];
+					for(int i = 0; i < count; i++) {
+						final long pos = postings[post++];
+						info.addPosition(FIELDS[f], (int)(pos >>> 32), (int)pos);
+					}
+				}
+				termsMap.put(term, info);
+			}
+			result = termsMap;
+		} catch(BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+			System.err.println(e);
+			isInvalid = true;
+		} catch(IOException e) {
+			// e.g., interrupted by stopping, the entry is kept
+			System.err.println(e);
+		} finally {
+			// a broken entry is deleted after its channel is closed
+			if(isInvalid)
+				file.delete();
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the terms of a document, replacing the outdated ones
+	 * of the same document. The file is written under a temporary name first.
+	 */
+	void save(final String docName, final String stamp, final Collection<CSCDTermInfo> terms) {
+		if(stamp.isEmpty()) return;
+		final File dir = getDiskDir();
+		if(!dir.exists() && !dir.mkdirs()) return;
+		final File file = getDiskFile(docName, stamp);
+		final String prefix = getSafeName(docName) + "~";
+		final File[] oldFiles = dir.listFiles((d, name) -> name.startsWith(prefix) && name.endsWith(SUFFIX));
+		if(oldFiles != null) {
+			for(final File f : oldFiles) {
+				if(!f.equals(file))
+					f.delete();
+			}
+		}
+		// lay out the sections first
+		final StringBuilder chars = new StringBuilder();
+		final int[] termStarts = new int[terms.size() + 1];
+		final int[] fieldMasks = new int[terms.size()];
+		int entryCount = 0;
+		int postCount = 0;
+		int t = 0;
+		for(final CSCDTermInfo info : terms) {
+			termStarts[t] = chars.length();
+			chars.append(info.getTerm());
+			for(final CSCDTermInfo.Field f : info.getFields()) {
+				fieldMasks[t] |= 1 << f.ordinal();
+				entryCount++;
+				postCount += info.getFrequency(f);
+			}
+			t++;
+		}
+		termStarts[t] = chars.length();
+		final int[] counts = new int[entryCount];
+		final long[] postings = new long[postCount];
+		int entry = 0;
+		int post = 0;
+		for(final CSCDTermInfo info : terms) {
+			for(final CSCDTermInfo.Field f : info.getFields()) {
+				final int count = info.getFrequency(f);
+				counts[entry++] = count;
+				for(int i = 0; i < count; i++)
+					postings[post++] = ((long)info.getLine(f, i) << 32) | (info.getIndex(f, i) & 0xFFFFFFFFL);
+			}
+		}
+		try {
+			final File temp = File.createTempFile(prefix, ".tmp", dir);
+			try(final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(terms.size());
+				out.writeInt(chars.length());
+				out.writeInt(entryCount);
+				out.writeInt(postCount);
+				PackedArrays.writeChars(out, chars.toString().toCharArray());
+				PackedArrays.writeInts(out, termStarts);
+				PackedArrays.writeInts(out, fieldMasks);
+				PackedArrays.writeInts(out, counts);
+				PackedArrays.writeLongs(out, postings);
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * TermDictionary.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform.toctree;
+
+import java.util.*;
+
+/**
+ * The dictionary of terms used by Tokenizer, giving each term a dense integer ID.
+ * The other structures keep only the IDs, so a term string is held once
+ * however many documents and fields it is in. The lookup is by open addressing,
+ * with no boxed keys. The methods are synchronized for the processing workers.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+class TermDictionary {
+	private String[] terms = new String[1024];
+	private int[] slots = new int[2048]; // ID + 1, or 0 if empty
+	private int size = 0;
+
+	/**
+	 * Returns the ID of a term, adding the term if it is new.
+	 */
+	synchronized int getId(final String term) {
+		int slot = findSlot(term);
+		if(slots[slot] > 0)
+			return slots[slot] - 1;
+		if(size == terms.length)
+			terms = Arrays.copyOf(terms, size * 2);
+		terms[size] = term;
+		slots[slot] = ++size;
+		if(size * 2 > slots.length)
+			grow();
+		return size - 1;
+	}
+
+	/**
+	 * Returns the ID of a term, or -1 if the term is not found.
+	 */
+	synchronized int findId(final String term) {
+		return slots[findSlot(term)] - 1;
+	}
+
+	/**
+	 * Returns the dictionary's own instance of a term, adding the term if it is new.
+	 */
+	synchronized String intern(final String term) {
+		return terms[getId(term)];
+	}
+
+	synchronized String getTerm(final int id) {
+		return terms[id];
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	synchronized void clear() {
+		terms = new String[1024];
+		slots = new int[2048];
+		size = 0;
+	}
+
+	private int findSlot(final String term) {
+		final int hash = term.hashCode();
+		int slot = (hash ^ (hash >>> 16)) & (slots.length - 1);
+		while(slots[slot] > 0 && !terms[slots[slot] - 1].equals(term))
+			slot = (slot + 1) & (slots.length - 1);
+		return slot;
+	}
+
+	private void grow() {
+		slots = new int[slots.length * 2];
+		for(int id = 0; id < size; id++)
+			slots[findSlot(terms[id])] = id + 1;
+	}
+}
@@ -21,67 +21,55 @@ package paliplatform.toctree;
 
 /** 
  * This is the result of document processing, mainly used for indexing.
+ * The frequencies of a term in all fields are kept by field ordinal.
  * @author J.R. Bhaddacak
- * @version 2.0
+ * @version 2.1
  * @since 2.0
  */
  
 public class TermFreq {
+	private static final int FIELD_COUNT = CSCDTermInfo.Field.values().length;
 	private final String term;
-	private int freq;
-	private int capFreq; // for capitalized term
-	private int totalFreq;
+	private final int[] freqs = new int[FIELD_COUNT];
+	private final int[] capFreqs = new int[FIELD_COUNT]; // for capitalized term
 	private final boolean isCap;
-	private double capPercent;
-	private final CSCDTermInfo.Field field;
 
-	public TermFreq(final String term, final int freq, final CSCDTermInfo.Field field) {
+	public TermFreq(final String term) {
 		this.term = term;
-		this.freq = freq;
-		totalFreq = freq;
-		capFreq = 0;
-		capPercent = 0.0;
 		isCap = Character.isUpperCase(term.charAt(0));
-		this.field = field;
 	}
 
 	public String getTerm() {
 		return term;
 	}
 
-	public int getFreq() {
-		return freq;
+	/**
+	 * Tells whether the term, or its capitalized form, is found in a field.
+	 */
+	public boolean hasField(final int fieldOrd) {
+		return freqs[fieldOrd] > 0 || capFreqs[fieldOrd] > 0;
 	}
 
-	public int getTotalFreq() {
-		return totalFreq;
+	public int getFreq(final int fieldOrd) {
+		return freqs[fieldOrd];
 	}
 
-	public int getCapFreq() {
-		return capFreq;
-	}
-	public double getCapPercent() {
-		return capPercent;
+	public int getCapFreq(final int fieldOrd) {
+		return capFreqs[fieldOrd];
 	}
 
-	public void setCapFreq(final int f) {
-		capFreq = f;
-		totalFreq += f;
-		capPercent = capFreq*100.0/totalFreq;
+	public void setCapFreq(final int fieldOrd, final int f) {
+		capFreqs[fieldOrd] = f;
 	}
 
-	public void addUpFreq(final int f) {
-		freq += f;
+	public void addUpFreq(final int fieldOrd, final int f) {
+		freqs[fieldOrd] += f;
 	}
 
 	public boolean isCapitalized() {
 		return isCap;
 	}
 
-	public CSCDTermInfo.Field getField() {
-		return field;
-	}
-
 	@Override
 	public String toString() {
 		return term;
@@ -24,7 +24,7 @@ import javafx.beans.property.*;
 /** 
  * This class is used in table display of Tokenizer.
  * @author J.R. Bhaddacak
- * @version 2.0
+ * @version 2.1
  * @since 2.0
  */
  
@@ -79,12 +79,4 @@ public final class TermFreqProp {
 	public boolean isCapitalized() {
 		return isCap;
 	}
-
-	public void addUpFreq(final TermFreq tf) {
-		final int f = freqProperty().get() + tf.getFreq();
-		freqProperty().set(f);
-		final int capf = capFreqProperty().get() + tf.getCapFreq();
-		capFreqProperty().set(capf);
-		totalFreqProperty().set(f + capf);
-	}
 }
@@ -24,22 +24,27 @@ import static java.lang.Math.log10;
 
 /** 
  * Term weighting is used for search upon the index created.
+ * The term frequencies are added document by document, with the ordinal
+ * of each document in the list given later to computeWeight. They are kept
+ * in primitive arrays, so that a term costs only as much as its postings.
  * @author J.R. Bhaddacak
- * @version 2.0
+ * @version 2.1
  * @since 2.0
  */
  
 public class TermWeight {
+	private static final CSCDTermInfo.Field[] FIELDS = CSCDTermInfo.Field.values();
 	private final String term;
-	private final Map<CSCDTermInfo.Field, Integer> docCountMap; // the number of docs having this term
-	private final Map<TOCTreeNode, Map<CSCDTermInfo.Field, Integer>> tfMap;
+	private final int[] docCounts = new int[FIELDS.length]; // the number of docs having this term, by field ordinal
+	private int[] tfDocs = new int[2]; // doc ordinals, in the order added
+	private int[] tfFields = new int[2]; // field ordinals
+	private int[] tfFreqs = new int[2];
+	private int tfSize = 0;
 	private final Map<TOCTreeNode, Map<CSCDTermInfo.Field, Double>> weightMap;
 	private final Map<CSCDTermInfo.Field, Double> queryWeightMap; // in case of this term is query
 
 	public TermWeight(final String term) {
 		this.term = term;
-		docCountMap = new EnumMap<>(CSCDTermInfo.Field.class);
-		tfMap = new HashMap<>();
 		weightMap = new HashMap<>();
 		queryWeightMap = new EnumMap<>(CSCDTermInfo.Field.class);
 	}
@@ -49,50 +54,60 @@ public class TermWeight {
 	}
 
 	public void increaseDocCount(final CSCDTermInfo.Field field) {
-		final int n;
-		if(docCountMap.containsKey(field))
-			n = docCountMap.get(field) + 1;
-		else
-			n = 1;
-		docCountMap.put(field, n);
+		docCounts[field.ordinal()]++;
 	}
 
-	public void addTF(final TOCTreeNode ttn, final CSCDTermInfo.Field field, final int tf) {
-		final Map<CSCDTermInfo.Field, Integer> map;
-		if(tfMap.containsKey(ttn))
-			map = tfMap.get(ttn);
-		else
-			map = new EnumMap<>(CSCDTermInfo.Field.class);
-		map.put(field, tf);
-		tfMap.put(ttn, map);
+	/**
+	 * Adds the frequency of this term in a field of a document, also counting
+	 * the document for the field.
+	 */
+	public void addTF(final int docOrd, final CSCDTermInfo.Field field, final int tf) {
+		if(tfSize == tfDocs.length) {
+			final int len = tfSize * 2;
+			tfDocs = Arrays.copyOf(tfDocs, len);
+			tfFields = Arrays.copyOf(tfFields, len);
+			tfFreqs = Arrays.copyOf(tfFreqs, len);
+		}
+		tfDocs[tfSize] = docOrd;
+		tfFields[tfSize] = field.ordinal();
+		tfFreqs[tfSize] = tf;
+		tfSize++;
+		docCounts[field.ordinal()]++;
 	}
 
+	/**
+	 * Computes the weights of this term in the documents added,
+	 * whose ordinals are the indices of the list.
+	 */
 	public void computeWeight(final List<TOCTreeNode> ttnList, final long totDocs) {
-		for(final TOCTreeNode ttn : ttnList) {
-			if(tfMap.containsKey(ttn)) {
-				final Map<CSCDTermInfo.Field, Integer> fmap = tfMap.get(ttn);
-				final Map<CSCDTermInfo.Field, Double> wmap = new EnumMap<>(CSCDTermInfo.Field.class);
-				docCountMap.forEach((fld, num) -> {
-					if(num > 0 && fmap.containsKey(fld)) {
-						final double idf = log10(totDocs/num);
-						final double w = logTFIDF(fmap.get(fld), idf);
-						wmap.put(fld, w);
-					}
-				});
-				weightMap.put(ttn, wmap);
+		weightMap.clear();
+		Map<CSCDTermInfo.Field, Double> wmap = null;
+		int lastDoc = -1;
+		for(int i = 0; i < tfSize; i++) {
+			final int doc = tfDocs[i];
+			if(doc != lastDoc) {
+				wmap = new EnumMap<>(CSCDTermInfo.Field.class);
+				weightMap.put(ttnList.get(doc), wmap);
+				lastDoc = doc;
+			}
+			final int num = docCounts[tfFields[i]];
+			if(num > 0) {
+				final double idf = log10(totDocs/num);
+				wmap.put(FIELDS[tfFields[i]], logTFIDF(tfFreqs[i], idf));
 			}
 		}
 	}
 
 	public void computeQueryWeight(final long totDocs) {
 		final int tf = 1; // term in query has frequency = 1
-		docCountMap.forEach((fld, num) -> {
+		for(int f = 0; f < FIELDS.length; f++) {
+			final int num = docCounts[f];
 			if(num > 0) {
 				final double idf = log10(totDocs/num);
 				final double w = logTFIDF(tf, idf);
-				queryWeightMap.put(fld, w);
+				queryWeightMap.put(FIELDS[f], w);
 			}
-		});
+		}
 	}
 
 	public Map<CSCDTermInfo.Field, Double> getQueryWeightMap() {
@@ -22,7 +22,8 @@ package paliplatform.toctree;
 import paliplatform.*;
 
 import java.util.*;
-import java.util.zip.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.stream.*;
 import java.util.function.*;
 import java.util.regex.*;
@@ -54,15 +55,28 @@ import javafx.concurrent.Task;
 /** 
  * This class manipulates terms in Pali documents.
  * It also makes indices and incorporates search function.
+ * The terms are given integer IDs by a TermDictionary, and the other
+ * structures are indexed by the IDs, with the field frequencies in arrays.
  * @author J.R. Bhaddacak
- * @version 2.0
+ * @version 2.1
  * @since 2.0
  */
 public class Tokenizer extends BorderPane {
 	private static final String MESSAGE_NO_DOC = "Add some documents and process";
 	private static final int SEARCH_RESULT_MAX_DOC = 20; // maximum search result including zero-scored docs
 	private static final int DEF_ADJ_WORDS = 5; // default number of adjacent words (both sides) in search result
+	private static final boolean[] PALI_CHAR_TABLE = new boolean[0x2000]; // the term characters, as in REX_NON_PALI
+	private static final CSCDTermInfo.Field[] FIELDS = CSCDTermInfo.Field.values();
 	private final StackPane mainPane = new StackPane();
+
+	static {
+		for(char ch = 'A'; ch <= 'Z'; ch++)
+			PALI_CHAR_TABLE[ch] = true;
+		for(char ch = 'a'; ch <= 'z'; ch++)
+			PALI_CHAR_TABLE[ch] = true;
+		for(final char ch : Utilities.PALI_ALL_CHARS.toCharArray())
+			PALI_CHAR_TABLE[ch] = true;
+	}
 	private final ListView<TOCTreeNode> docListView = new ListView<>();
 	private final ObservableList<TOCTreeNode> docNodeList = FXCollections.<TOCTreeNode>observableArrayList();
 	private final Set<TOCTreeNode> unsortedDocSet = new LinkedHashSet<>();
@@ -79,10 +93,12 @@ public class Tokenizer extends BorderPane {
 	private final InfoPopup mainHelpPopup = new InfoPopup();
 	private final InfoPopup filterHelpPopup = new InfoPopup();
 	private final TableView<TermFreqProp> table = new TableView<>();
-	private final Map<String, TermFreq> processedResultMap = new HashMap<>();
-	private final Map<String, TermWeight> weightedResultMap = new HashMap<>();
+	private final TermDictionary termDict = new TermDictionary();
+	private TermFreq[] processedResults = new TermFreq[0]; // by term ID, null if not found
+	private int processedCount = 0;
+	private TermWeight[] weightedResults = new TermWeight[0]; // by term ID, null if not found
 	private final ObservableList<TermFreqProp> shownResultList = FXCollections.<TermFreqProp>observableArrayList();
-	private final Map<TOCTreeNode, Map<String, Map<CSCDTermInfo.Field, Integer>>> docTermFreqMap = new HashMap<>();
+	private final Map<TOCTreeNode, DocTerms> docTermFreqMap = new ConcurrentHashMap<>();
 	private final Map<String, TermFreqProp> mergedResultMap = new HashMap<>();
 	private final ChoiceBox<Integer> maxRowChoice = new ChoiceBox<>();
 	private final CheckMenuItem combineCapMenuItem = new CheckMenuItem("Combine capitalized terms");
@@ -220,7 +236,7 @@ public class Tokenizer extends BorderPane {
 		mainOptionMenu.setTooltip(new Tooltip("Options"));
 		combineCapMenuItem.setSelected(true);
 		final EventHandler<ActionEvent> updateTable = actionEvent -> {
-			if(!processedResultMap.isEmpty()) {
+			if(processedCount > 0) {
 				formatResult();
 				if(!shownResultList.isEmpty())
 					setupTable();
@@ -507,6 +523,8 @@ public class Tokenizer extends BorderPane {
 		unsortedDocSet.clear();
 		shownResultList.clear();
 		docTermFreqMap.clear();
+		if(!isProcessing.get() && !isComputing.get())
+			termDict.clear(); // the IDs are not used anymore
 		searchResultBox.getChildren().clear();
 		prepareDocsAndTerms();
 	}
@@ -614,7 +632,11 @@ public class Tokenizer extends BorderPane {
 
 	private void processDocument() {
 		progressBar.setProgress(0);
-		processTask = processDocs();
+		// take the documents here, the list is changed only on the FX thread
+		final List<TOCTreeNode> ttnList = docListView.getItems().stream()
+												.filter(x -> x.getProcessStatus() == ProcessStatus.UNPROCESSED)
+												.collect(Collectors.toList());
+		processTask = processDocs(ttnList);
 		progressBar.progressProperty().bind(processTask.progressProperty());
 		processTask.messageProperty().addListener((ObservableValue<? extends String> observable, String oldValue, String newValue) -> {
 			progressMessage.setText(newValue + " processed");
@@ -630,58 +652,121 @@ public class Tokenizer extends BorderPane {
 		isProcessing.set(false);
 		progressBar.progressProperty().unbind();
 		statusPane.getChildren().remove(progressBox);
+		// the terms are computed again when the task finishes
 		isComputing.set(true);
-		prepareDocsAndTerms();
 	}
 
-    private Task<Boolean> processDocs() {
-        return new Task<Boolean>() {
-            @Override
-            protected Boolean call() throws Exception {
-				final ObservableList<TOCTreeNode> ttnList = docListView.getItems();
+	/**
+	 * Processes the documents concurrently, one document for each task of a worker pool
+	 * sized to the machine. The list refresh is coalesced into one pending call on
+	 * the FX thread. Cancelling the task stops all workers, and the documents
+	 * not finished stay unprocessed. The task waits for the running workers,
+	 * so the terms are computed after all documents are settled.
+	 */
+	private Task<Boolean> processDocs(final List<TOCTreeNode> ttnList) {
+		return new Task<Boolean>() {
+			@Override
+			protected Boolean call() throws Exception {
 				final int total = ttnList.size();
-				for(int i = 0; i < total; i++) {
-					if(isCancelled())
-						break;
-					final TOCTreeNode ttn = ttnList.get(i);
-					if(ttn.getProcessStatus() == ProcessStatus.UNPROCESSED) {
-						ttn.setProcessStatus(ProcessStatus.INCLUDED);
-						ttn.setTermsMap(readTermsMap(ttn));
-						final Map<String, Map<CSCDTermInfo.Field, Integer>> termFreqMap = new HashMap<>();
-						final Map<String, CSCDTermInfo> termsMap = ttn.getTermsMap();
-						termsMap.forEach((term, terminfo) -> {
-							final Map<CSCDTermInfo.Field, List<int[]>> postingMap = terminfo.getPostingMap();
-							final List<CSCDTermInfo.Field> fields = new ArrayList<>(postingMap.keySet());
-							final Map<CSCDTermInfo.Field, Integer> freqMap = new EnumMap<>(CSCDTermInfo.Field.class);
-							for(final CSCDTermInfo.Field f : fields) {
-								final int freq = postingMap.get(f).size();
-								if(freq > 0)
-									freqMap.put(f, freq);
+				final int threadCount = Math.max(1, Math.min(total, Runtime.getRuntime().availableProcessors()));
+				final ExecutorService workers = Executors.newFixedThreadPool(threadCount, runnable -> {
+					final Thread thread = new Thread(runnable, "tokenizer-worker");
+					thread.setDaemon(true);
+					return thread;
+				});
+				final AtomicInteger doneCount = new AtomicInteger();
+				final AtomicBoolean refreshPending = new AtomicBoolean(false);
+				final AtomicInteger failedCount = new AtomicInteger();
+				try {
+					for(final TOCTreeNode ttn : ttnList) {
+						workers.execute(() -> {
+							if(isCancelled()) return;
+							try {
+								final Map<String, CSCDTermInfo> termsMap = readTermsMap(ttn);
+								if(isCancelled()) return;
+								ttn.setTermsMap(termsMap);
+								docTermFreqMap.put(ttn, new DocTerms(termsMap, termDict));
+								ttn.setProcessStatus(ProcessStatus.INCLUDED);
+							} catch(RuntimeException e) {
+								System.err.println(ttn.getFileName() + ": " + e);
+								failedCount.incrementAndGet();
+								return;
 							}
-							if(!freqMap.isEmpty()) {
-								termFreqMap.put(term, freqMap);
+							final int done = doneCount.incrementAndGet();
+							updateMessage(done + "/" + total);
+							updateProgress(done, total);
+							if(refreshPending.compareAndSet(false, true)) {
+								Platform.runLater(() -> {
+									refreshPending.set(false);
+									docListView.refresh();
+								});
 							}
 						});
-						docTermFreqMap.put(ttn, termFreqMap);
-						docListView.refresh();
 					}
-					updateMessage((i+1) + "/" + total);
-					updateProgress(i + 1, total);
-                }
+					workers.shutdown();
+					while(!workers.awaitTermination(200, TimeUnit.MILLISECONDS)) {
+						if(isCancelled())
+							break;
+					}
+				} catch(InterruptedException e) {
+					// cancelled while waiting
+				} finally {
+					workers.shutdownNow();
+					awaitWorkers(workers);
+				}
 				Platform.runLater(() -> {
-					isProcessing.set(false);
-					progressBar.progressProperty().unbind();
-					statusPane.getChildren().remove(progressBox);
+					docListView.refresh();
+					if(!isCancelled()) {
+						// otherwise stopProcess has done this
+						isProcessing.set(false);
+						progressBar.progressProperty().unbind();
+						statusPane.getChildren().remove(progressBox);
+					}
 					isComputing.set(true);
 					prepareDocsAndTerms();
+					if(failedCount.get() > 0) {
+						final Alert alert = new Alert(Alert.AlertType.ERROR);
+						if(getScene() != null)
+							alert.initOwner(getScene().getWindow());
+						alert.setHeaderText(null);
+						alert.setContentText(failedCount.get() + " document(s) cannot be processed, see the error log.");
+						alert.show();
+					}
 				});
-                return true;
-            }
-        };
-    }
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Waits until the workers stopped, even if the waiting thread is interrupted
+	 * by the cancellation. A worker being parsed cannot be stopped midway.
+	 */
+	private static void awaitWorkers(final ExecutorService workers) {
+		boolean interrupted = false;
+		while(true) {
+			try {
+				if(workers.awaitTermination(200, TimeUnit.MILLISECONDS))
+					break;
+			} catch(InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
 
+	/**
+	 * Reads the terms of a document, from the term cache if the document is not changed,
+	 * otherwise the document is parsed and tokenized, and the result is cached.
+	 */
 	private Map<String, CSCDTermInfo> readTermsMap(final TOCTreeNode ttn) {
+		final String stamp = TermCache.INSTANCE.getStamp(ttn);
+		final Map<String, CSCDTermInfo> cached = TermCache.INSTANCE.load(ttn.getFileName(), stamp, termDict);
+		if(cached != null)
+			return cached;
 		final Map<String, CSCDTermInfo> result = new HashMap<>();
+		boolean isRead = true; // not to cache a failed reading
 		final Map<CSCDTermInfo.Field, StringBuilder> textMap = new EnumMap<>(CSCDTermInfo.Field.class);
 		for(final CSCDTermInfo.Field fld : CSCDTermInfo.Field.values()) {
 			textMap.put(fld, new StringBuilder());
@@ -694,6 +779,7 @@ public class Tokenizer extends BorderPane {
 				textMap.get(CSCDTermInfo.Field.BODYTEXT).append(text);
 			} catch(IOException e) {
 				System.err.println(e);
+				isRead = false;
 			}
 		} else {
 			try {
@@ -701,20 +787,18 @@ public class Tokenizer extends BorderPane {
 				final SAXParser saxParser = spf.newSAXParser();
 				final DefaultHandler handler = new CSCDTermInfoSAXHandler(textMap);
 				if(ttn.isInArchive()) {
-					final ZipFile zip = new ZipFile(new File(Utilities.ROOTDIR + Utilities.COLLPATH + Utilities.CSCD_ZIP));
-					final ZipEntry entry = zip.getEntry(Utilities.CSCD_DIR + ttn.getFileName());
-					if(entry != null) {
-						saxParser.parse(zip.getInputStream(entry), handler);
-					} else {
-						zip.close();
+					final InputStream in = CorpusStore.INSTANCE.getInputStream(ttn.getFileName());
+					if(in == null)
 						return result;
+					try(in) {
+						saxParser.parse(in, handler);
 					}
-					zip.close();
 				} else {
 					saxParser.parse(new File(Utilities.EXTRAPATH + ttn.getFileName()), handler);
 				}
 			} catch(SAXException | ParserConfigurationException | IOException e) {
 				System.err.println(e);
+				isRead = false;
 			}
 		}
 		// for debug
@@ -728,34 +812,68 @@ public class Tokenizer extends BorderPane {
 		Utilities.saveText(debugText.toString(), debugOut);
 		*/
 		// tokenize each word in each field
+		final TermTable termTable = new TermTable(termDict);
+		char[] buffer = new char[0];
 		for(final CSCDTermInfo.Field f : CSCDTermInfo.Field.values()) {
 			if(!textMap.containsKey(f)) continue;
-			final String[] lines = textMap.get(f).toString().lines()
-									.filter(x -> !x.trim().isEmpty())
-									.collect(Collectors.toList()).toArray(new String[0]);
-			for(int n = 0; n < lines.length; n++) {
-				final String[] tokens = lines[n].trim().split(Utilities.REX_NON_PALI);
-				for(int i = 0; i < tokens.length; i++) {
-					final String term = tokens[i];
-					if(!term.isEmpty()) {
-						final CSCDTermInfo terminfo;
-						if(result.containsKey(term))
-							terminfo = result.get(term);
-						else
-							terminfo = new CSCDTermInfo(term);
-						final List<int[]> pstList;
-						if(terminfo.getPostingMap().containsKey(f))
-							pstList = terminfo.getPostingMap().get(f);
-						else
-							pstList = new ArrayList<>();
-						pstList.add(new int[] { n, i });
-						terminfo.addPosting(f, pstList);
-						result.put(term, terminfo);
-					} // end if
+			final StringBuilder text = textMap.get(f);
+			final int length = text.length();
+			if(buffer.length < length)
+				buffer = new char[length];
+			text.getChars(0, length, buffer, 0);
+			scanField(buffer, length, f, termTable);
+		}
+		termTable.forEach(x -> result.put(x.getTerm(), x));
+		if(isRead)
+			TermCache.INSTANCE.save(ttn.getFileName(), stamp, result.values());
+		return result;
+	}
+
+	/**
+	 * Scans the terms in a field's text, and adds their positions.
+	 * This is the same as splitting non-blank lines (trimmed) with Utilities.REX_NON_PALI,
+	 * i.e., the line number counts only non-blank lines, and a line beginning with
+	 * a non-Pāli character has its first term at index 1, but no string is made
+	 * except for a new term.
+	 */
+	private static void scanField(final char[] chars, final int length, final CSCDTermInfo.Field field,
+								final TermTable termTable) {
+		int lineNum = 0;
+		int lineStart = 0;
+		while(lineStart < length) {
+			// find the line end, as String.lines does
+			int lineEnd = lineStart;
+			while(lineEnd < length && chars[lineEnd] != '\n' && chars[lineEnd] != '\r')
+				lineEnd++;
+			final int nextStart = lineEnd < length - 1 && chars[lineEnd] == '\r' && chars[lineEnd + 1] == '\n'
+								? lineEnd + 2 : lineEnd + 1;
+			// trim as String.trim does
+			int start = lineStart;
+			int end = lineEnd;
+			while(start < end && chars[start] <= ' ')
+				start++;
+			while(end > start && chars[end - 1] <= ' ')
+				end--;
+			if(start < end) {
+				int index = isPaliChar(chars[start]) ? 0 : 1;
+				int pos = start;
+				while(pos < end) {
+					while(pos < end && !isPaliChar(chars[pos]))
+						pos++;
+					final int termStart = pos;
+					while(pos < end && isPaliChar(chars[pos]))
+						pos++;
+					if(pos > termStart)
+						termTable.get(chars, termStart, pos - termStart).addPosition(field, lineNum, index++);
 				}
+				lineNum++;
 			}
+			lineStart = nextStart;
 		}
-		return result;
+	}
+
+	private static boolean isPaliChar(final char ch) {
+		return ch < PALI_CHAR_TABLE.length && PALI_CHAR_TABLE[ch];
 	}
 
 	private void prepareDocsAndTerms() {
@@ -768,70 +886,90 @@ public class Tokenizer extends BorderPane {
 															.filter(x -> x.getProcessStatus() == ProcessStatus.INCLUDED)
 															.collect(Collectors.toList());
 				final int totDocs = dlist.size();
+				long phaseStart = System.nanoTime();
+				final long[] phaseTimes = new long[4];
 				// create term list
 				updateMessage("Creating term list");
-				processedResultMap.clear();
+				TermFreq[] results = new TermFreq[termDict.size()];
+				int count = 0;
 				for(final TOCTreeNode ttn : dlist) {
-					final Map<String, Map<CSCDTermInfo.Field, Integer>> tfmap = docTermFreqMap.get(ttn);
-					tfmap.forEach((term, fmap) -> {
-						fmap.forEach((field, freq) -> {
-							final String key = term + ":" + field.ordinal();
-							final TermFreq tf;
-							if(processedResultMap.containsKey(key)) {
-								tf = processedResultMap.get(key);
-								if(tf.getField() == field)
-									tf.addUpFreq(freq);
-							} else {
-								tf = new TermFreq(term, freq, field);
-							}
-							processedResultMap.put(key, tf);
-						});
-					});
+					final DocTerms docTerms = docTermFreqMap.get(ttn);
+					for(int i = 0; i < docTerms.size(); i++) {
+						final int id = docTerms.getTermId(i);
+						if(results[id] == null) {
+							results[id] = new TermFreq(termDict.getTerm(id));
+							count++;
+						}
+						for(int f = 0; f < FIELDS.length; f++) {
+							final int freq = docTerms.getFreq(i, f);
+							if(freq > 0)
+								results[id].addUpFreq(f, freq);
+						}
+					}
 				}
+				phaseTimes[0] = System.nanoTime() - phaseStart;
+				phaseStart = System.nanoTime();
 				// process capitalized terms
 				updateMessage("Processing capitalized terms");
-				final List<String> capKeys = processedResultMap.keySet().stream()
-															.filter(x -> Character.isUpperCase(x.charAt(0)))
-															.collect(Collectors.toList());
-				for(final String cap : capKeys) {
-					final TermFreq tfCap = processedResultMap.get(cap);
-					final String lower = cap.toLowerCase();
-					final TermFreq tfLower;
-					if(processedResultMap.containsKey(lower)) {
-						tfLower = processedResultMap.get(lower);
-					} else {
-						final String lowerTerm = lower.split(":")[0];
-						tfLower = new TermFreq(lowerTerm, 0, tfCap.getField());
-						processedResultMap.put(lower, tfLower);
+				final int termCount = results.length;
+				for(int id = 0; id < termCount; id++) {
+					final TermFreq tfCap = results[id];
+					if(tfCap == null || !tfCap.isCapitalized()) continue;
+					final int lowerId = termDict.getId(tfCap.getTerm().toLowerCase());
+					if(lowerId >= results.length)
+						results = Arrays.copyOf(results, termDict.size());
+					if(results[lowerId] == null) {
+						results[lowerId] = new TermFreq(termDict.getTerm(lowerId));
+						count++;
+					}
+					for(int f = 0; f < FIELDS.length; f++) {
+						final int freq = tfCap.getFreq(f);
+						if(freq > 0)
+							results[lowerId].setCapFreq(f, freq);
 					}
-					tfLower.setCapFreq(tfCap.getFreq());
 				}
-				// compute doc weighting
-				updateMessage("Calculating weights (please wait)");
-				weightedResultMap.clear();
-				final Set<String> tset = processedResultMap.keySet();
-				tset.forEach(t -> {
-					final String term = t.split(":")[0];
-					if(!weightedResultMap.containsKey(term))
-						weightedResultMap.put(term, new TermWeight(term));
-				});
-				final int total = weightedResultMap.size();
-				int count = 0;
-				for(final TermWeight tw : weightedResultMap.values()) {
-					final String term = tw.getTerm();
-					for(final TOCTreeNode ttn : dlist) {
-						final Map<String, Map<CSCDTermInfo.Field, Integer>> tfMap = docTermFreqMap.get(ttn);
-						if(tfMap.containsKey(term)) {
-							final Map<CSCDTermInfo.Field, Integer> fmap = tfMap.get(term);
-							fmap.forEach((fld, frq) -> {
-								tw.addTF(ttn, fld, frq);
-								tw.increaseDocCount(fld);
-							});
+				phaseTimes[1] = System.nanoTime() - phaseStart;
+				phaseStart = System.nanoTime();
+				// collect term frequencies, in one pass over the documents
+				updateMessage("Collecting term frequencies");
+				final TermWeight[] weights = new TermWeight[results.length];
+				final List<TermWeight> weightList = new ArrayList<>(count);
+				for(int id = 0; id < results.length; id++) {
+					if(results[id] != null) {
+						weights[id] = new TermWeight(results[id].getTerm());
+						weightList.add(weights[id]);
+					}
+				}
+				for(int d = 0; d < totDocs; d++) {
+					final DocTerms docTerms = docTermFreqMap.get(dlist.get(d));
+					for(int i = 0; i < docTerms.size(); i++) {
+						final TermWeight tw = weights[docTerms.getTermId(i)];
+						for(int f = 0; f < FIELDS.length; f++) {
+							final int freq = docTerms.getFreq(i, f);
+							if(freq > 0)
+								tw.addTF(d, FIELDS[f], freq);
 						}
 					}
-					tw.computeWeight(dlist, totDocs);
-					updateProgress(++count, total);
+					updateProgress(d + 1, totDocs);
 				}
+				phaseTimes[2] = System.nanoTime() - phaseStart;
+				phaseStart = System.nanoTime();
+				// compute doc weighting, each term on its own
+				updateMessage("Calculating weights");
+				final int total = weightList.size();
+				final AtomicInteger weightCount = new AtomicInteger();
+				weightList.parallelStream().forEach(tw -> {
+					tw.computeWeight(dlist, totDocs);
+					final int n = weightCount.incrementAndGet();
+					if(n % 1000 == 0 || n == total)
+						updateProgress(n, total);
+				});
+				processedResults = results;
+				processedCount = count;
+				weightedResults = weights;
+				phaseTimes[3] = System.nanoTime() - phaseStart;
+				final String timeInfo = String.format("Terms %.2f s, capitalized %.2f s, frequencies %.2f s, weights %.2f s",
+						phaseTimes[0] / 1e9, phaseTimes[1] / 1e9, phaseTimes[2] / 1e9, phaseTimes[3] / 1e9);
 				Platform.runLater(() -> {
 					isComputing.set(false);
 					progressBar.progressProperty().unbind();
@@ -841,6 +979,8 @@ public class Tokenizer extends BorderPane {
 						generalMessage.setText(MESSAGE_NO_DOC);
 					else if(dlist.isEmpty())
 						generalMessage.setText("Please process or include some document(s)");
+					else
+						generalMessage.setText(timeInfo);
 				});
 				return true;
 			}
@@ -923,7 +1063,7 @@ public class Tokenizer extends BorderPane {
 	public boolean updateResult() {
 		final boolean result;
 		formatResult(maxRowCount);
-		if(!processedResultMap.isEmpty()) {
+		if(processedCount > 0) {
 			if(!shownResultList.isEmpty()) {
 				setupTable();
 				if(!searchTextField.getText().isEmpty())
@@ -954,11 +1094,9 @@ public class Tokenizer extends BorderPane {
 
 	private void formatResult(final int maxRow, final String strInput) {
 		// prepare filters
-		final Predicate<String> fieldFilter = x -> {
-			final int ind = Integer.parseInt(x.split(":")[1]);
-			final CSCDTermInfo.Field fld = CSCDTermInfo.Field.values()[ind];
-			return fieldOptionsBox.isFieldSelected(fld);
-		};
+		final boolean[] fieldSelected = new boolean[FIELDS.length];
+		for(int f = 0; f < FIELDS.length; f++)
+			fieldSelected[f] = fieldOptionsBox.isFieldSelected(FIELDS[f]);
 		final Predicate<TermFreqProp> termFilter;
 		String patt = strInput == null ? "" : strInput;
 		if(currFilterMode == FilterMode.WILDCARDS) {
@@ -996,21 +1134,22 @@ public class Tokenizer extends BorderPane {
 			if(onlyCapMenuItem.isSelected())
 				caseFilter = caseFilter.and(x -> x.isCapitalized());
 		}
-		// filter by fields first
-		final List<String> filteredTerms = processedResultMap.keySet().stream().filter(fieldFilter).collect(Collectors.toList());
-		// then merge identical terms in different docs and fields into the merged list
+		// merge the frequencies of each term in the selected fields into the merged list
 		mergedResultMap.clear();
-		for(final String tfld: filteredTerms) {
-			final TermFreq tf = processedResultMap.get(tfld);
-			final TermFreqProp tfp;
-			final String term = tfld.split(":")[0];
-			if(mergedResultMap.containsKey(term)) {
-				tfp = mergedResultMap.get(term);
-				tfp.addUpFreq(tf);
-			} else {
-				tfp = new TermFreqProp(tf.getTerm(), tf.getFreq(), tf.getCapFreq());
-				mergedResultMap.put(term, tfp);
+		for(final TermFreq tf : processedResults) {
+			if(tf == null) continue;
+			boolean found = false;
+			int freq = 0;
+			int capFreq = 0;
+			for(int f = 0; f < FIELDS.length; f++) {
+				if(fieldSelected[f] && tf.hasField(f)) {
+					found = true;
+					freq += tf.getFreq(f);
+					capFreq += tf.getCapFreq(f);
+				}
 			}
+			if(found)
+				mergedResultMap.put(tf.getTerm(), new TermFreqProp(tf.getTerm(), freq, capFreq));
 		}
 		// filter by search term and cap option, sort and set limit, create the displayed result
 		final Comparator<TermFreqProp> fcomp = combineCapMenuItem.isSelected()
@@ -1117,11 +1256,16 @@ public class Tokenizer extends BorderPane {
 		// compute query weighting for each term
 		qTokens.forEach(qterm -> {
 			final TermWeight tw = new TermWeight(qterm);
-			for(final TOCTreeNode ttn : dlist) {
-				final Map<String, Map<CSCDTermInfo.Field, Integer>> tfMap = docTermFreqMap.get(ttn);
-				if(tfMap.containsKey(qterm)) {
-					final Set<CSCDTermInfo.Field> fldSet = tfMap.get(qterm).keySet();
-					fldSet.forEach(fld -> tw.increaseDocCount(fld));
+			final int qid = termDict.findId(qterm);
+			if(qid >= 0) {
+				for(final TOCTreeNode ttn : dlist) {
+					final DocTerms docTerms = docTermFreqMap.get(ttn);
+					final int i = docTerms.indexOf(qid);
+					if(i < 0) continue;
+					for(int f = 0; f < FIELDS.length; f++) {
+						if(docTerms.getFreq(i, f) > 0)
+							tw.increaseDocCount(FIELDS[f]);
+					}
 				}
 			}
 			tw.computeQueryWeight(dlist.size());
@@ -1130,11 +1274,15 @@ public class Tokenizer extends BorderPane {
 		// compute similarity between query and documents
 		final Set<TOCTreeNode> resultSet = new HashSet<>();
 		final Set<CSCDTermInfo.Field> foundFieldSet = EnumSet.noneOf(CSCDTermInfo.Field.class);
-		weightedResultMap.values().forEach(x -> x.resetDocScores());
+		final TermWeight[] weights = weightedResults;
+		for(final TermWeight tw : weights) {
+			if(tw != null)
+				tw.resetDocScores();
+		}
 		for(final TermWeight qtw : qList) {
-			final String term = qtw.getTerm();
-			if(weightedResultMap.containsKey(term)) {
-				final TermWeight wtw = weightedResultMap.get(term);
+			final int id = termDict.findId(qtw.getTerm());
+			if(id >= 0 && id < weights.length && weights[id] != null) {
+				final TermWeight wtw = weights[id];
 				final Map<TOCTreeNode, Map<CSCDTermInfo.Field, Double>> simMap = wtw.getSimScores(qtw);
 				simMap.forEach((doc, map) -> {
 					map.forEach((fld, score) -> {
@@ -1189,13 +1337,13 @@ public class Tokenizer extends BorderPane {
 								// find other terms in the same line
 								final List<String> portionList = new ArrayList<>();
 								final List<Text> contextList = new ArrayList<>();
+								final int winSize = searchResultWinSizeSpinner.getValue();
 								allTermsMap.values().forEach(x -> {
-									final List<int[]> poslist = x.getPositionList(fld);
-									if(poslist != null) {
-										for(final int[] p : poslist) {
-											if(p[0] == line && (p[1] == pos || abs(p[1] - pos) <= searchResultWinSizeSpinner.getValue()))
-												portionList.add(p[1] + ":" + x.getTerm());
-										}
+									final int freq = x.getFrequency(fld);
+									for(int j = 0; j < freq; j++) {
+										final int p = x.getIndex(fld, j);
+										if(x.getLine(fld, j) == line && abs(p - pos) <= winSize)
+											portionList.add(p + ":" + x.getTerm());
 									}
 								});
 								final List<String> finalString = portionList.stream()
@@ -1337,4 +1485,117 @@ public class Tokenizer extends BorderPane {
 	private void saveCSV() {
 		Utilities.saveText(makeCSV(), "termlist.csv");
 	}
+
+	// inner classes
+	/**
+	 * The term frequencies of a document, the term IDs in ascending order,
+	 * each with the frequencies of all fields by ordinal.
+	 */
+	private static class DocTerms {
+		private final int[] termIds;
+		private final int[] freqs; // FIELDS.length for each term
+
+		private DocTerms(final Map<String, CSCDTermInfo> termsMap, final TermDictionary dict) {
+			// sort the terms by ID, keeping the original order in the low half
+			final CSCDTermInfo[] infos = termsMap.values().toArray(new CSCDTermInfo[0]);
+			final long[] order = new long[infos.length];
+			for(int i = 0; i < infos.length; i++)
+				order[i] = ((long)dict.getId(infos[i].getTerm()) << 32) | i;
+			Arrays.sort(order);
+			termIds = new int[infos.length];
+			freqs = new int[infos.length * FIELDS.length];
+			for(int i = 0; i < order.length; i++) {
+				termIds[i] = (int)(order[i] >>> 32);
+				final CSCDTermInfo info = infos[(int)order[i]];
+				for(int f = 0; f < FIELDS.length; f++)
+					freqs[i * FIELDS.length + f] = info.getFrequency(FIELDS[f]);
+			}
+		}
+
+		private int size() {
+			return termIds.length;
+		}
+
+		private int getTermId(final int i) {
+			return termIds[i];
+		}
+
+		private int getFreq(final int i, final int fieldOrd) {
+			return freqs[i * FIELDS.length + fieldOrd];
+		}
+
+		private int indexOf(final int termId) {
+			final int i = Arrays.binarySearch(termIds, termId);
+			return i < 0 ? -1 : i;
+		}
+	}
+
+	/**
+	 * The open-addressing table of the terms of a document, looked up by a range of chars,
+	 * so that a string is made only for a new term. The term kept is the one in the dictionary.
+	 */
+	private static class TermTable {
+		private final TermDictionary dict;
+		private CSCDTermInfo[] slots = new CSCDTermInfo[1024];
+		private int[] hashes = new int[1024];
+		private int size = 0;
+
+		private TermTable(final TermDictionary dict) {
+			this.dict = dict;
+		}
+
+		private CSCDTermInfo get(final char[] chars, final int start, final int len) {
+			int hash = 0;
+			for(int i = start; i < start + len; i++)
+				hash = 31 * hash + chars[i];
+			int slot = mix(hash) & (slots.length - 1);
+			while(slots[slot] != null) {
+				if(hashes[slot] == hash && matches(slots[slot].getTerm(), chars, start, len))
+					return slots[slot];
+				slot = (slot + 1) & (slots.length - 1);
+			}
+			final CSCDTermInfo result = new CSCDTermInfo(dict.intern(new String(chars, start, len)));
+			slots[slot] = result;
+			hashes[slot] = hash;
+			if(++size * 2 > slots.length)
+				grow();
+			return result;
+		}
+
+		private static int mix(final int hash) {
+			return hash ^ (hash >>> 16);
+		}
+
+		private static boolean matches(final String term, final char[] chars, final int start, final int len) {
+			if(term.length() != len)
+				return false;
+			for(int i = 0; i < len; i++) {
+				if(term.charAt(i) != chars[start + i])
+					return false;
+			}
+			return true;
+		}
+
+		private void grow() {
+			final CSCDTermInfo[] oldSlots = slots;
+			final int[] oldHashes = hashes;
+			slots = new CSCDTermInfo[oldSlots.length * 2];
+			hashes = new int[oldSlots.length * 2];
+			for(int i = 0; i < oldSlots.length; i++) {
+				if(oldSlots[i] == null) continue;
+				int slot = mix(oldHashes[i]) & (slots.length - 1);
+				while(slots[slot] != null)
+					slot = (slot + 1) & (slots.length - 1);
+				slots[slot] = oldSlots[i];
+				hashes[slot] = oldHashes[i];
+			}
+		}
+
+		private void forEach(final Consumer<CSCDTermInfo> action) {
+			for(final CSCDTermInfo info : slots) {
+				if(info != null)
+					action.accept(info);
+			}
+		}
+	}
 }
@@ -0,0 +1,288 @@
+/*
+ * TrigramIndex.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform.toctree;
+
+import paliplatform.*;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.io.*;
+import java.nio.CharBuffer;
+
+/**
+ * The trigram index of the raw XML documents in the CSCD collection, used to
+ * prefilter the regex content search in DocumentFinder. For each trigram
+ * (three consecutive chars) the documents containing it are listed.
+ * The index is persisted in the index directory, and it is rebuilt when
+ * the collection or the document list changes. This is a singleton.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+public class TrigramIndex {
+	public static final TrigramIndex INSTANCE = new TrigramIndex();
+	private static final int MAGIC = 0x50505447; // "PPTG"
+	private static final int VERSION = 1;
+	private List<String> docNames = null;
+	private long[] keys = null; // sorted trigrams
+	private int[] starts = null; // start of each trigram's postings
+	private char[] postings = null; // document ordinals
+
+	private TrigramIndex() {
+	}
+
+	private File getIndexFile() {
+		return new File(Utilities.ROOTDIR + Utilities.INDEXPATH + Utilities.TRIGRAM_INDEX);
+	}
+
+	public synchronized boolean isReady() {
+		return keys != null;
+	}
+
+	/**
+	 * Makes the index ready, by loading from disk or building a new one.
+	 * False is returned if the building is stopped or fails.
+	 */
+	public synchronized boolean prepare(final BooleanSupplier stopper, final IntConsumer progress) {
+		if(keys != null && docNames.equals(Utilities.cscdFiles))
+			return true;
+		if(load())
+			return true;
+		if(!build(stopper, progress))
+			return false;
+		save();
+		return true;
+	}
+
+	private static long packTrigram(final char c0, final char c1, final char c2) {
+		return ((long)c0 << 32) | ((long)c1 << 16) | c2;
+	}
+
+	/**
+	 * Filters the file list to only the documents possibly matching the pattern.
+	 * If the index is not ready, or the pattern cannot be analyzed, the list is returned as is.
+	 */
+	public synchronized List<String> filter(final Pattern patt, final List<String> fileList) {
+		if(keys == null)
+			return fileList;
+		final TrigramQuery query = TrigramQuery.fromPattern(patt);
+		if(query.getOp() == TrigramQuery.Op.ALL)
+			return fileList;
+		final BitSet candidates = evaluate(query);
+		final Map<String, Integer> ordinalMap = new HashMap<>();
+		for(int i = 0; i < docNames.size(); i++)
+			ordinalMap.put(docNames.get(i), i);
+		final List<String> result = new ArrayList<>();
+		for(final String name : fileList) {
+			final Integer ord = ordinalMap.get(name);
+			if(ord == null || candidates.get(ord))
+				result.add(name);
+		}
+		return result;
+	}
+
+	private BitSet evaluate(final TrigramQuery query) {
+		final BitSet result = new BitSet(docNames.size());
+		switch(query.getOp()) {
+			case ALL:
+				result.set(0, docNames.size());
+				break;
+			case TRIGRAM:
+				final String tri = query.getTrigram();
+				final int ind = Arrays.binarySearch(keys, packTrigram(tri.charAt(0), tri.charAt(1), tri.charAt(2)));
+				if(ind >= 0) {
+					for(int i = starts[ind]; i < starts[ind + 1]; i++)
+						result.set(postings[i]);
+				}
+				break;
+			case AND:
+				result.set(0, docNames.size());
+				for(final TrigramQuery q : query.getSubQueries()) {
+					result.and(evaluate(q));
+					if(result.isEmpty()) break;
+				}
+				break;
+			case OR:
+				for(final TrigramQuery q : query.getSubQueries())
+					result.or(evaluate(q));
+				break;
+		}
+		return result;
+	}
+
+	private boolean build(final BooleanSupplier stopper, final IntConsumer progress) {
+		final List<String> names = new ArrayList<>(Utilities.cscdFiles);
+		if(names.size() > Character.MAX_VALUE)
+			return false;
+		final Map<Long, PostingList> postingMap = new HashMap<>();
+		final int[] done = { 0 };
+		IntStream.range(0, names.size()).parallel().forEach(ord -> {
+			if(stopper.getAsBoolean()) return;
+			final LongSet triSet = new LongSet();
+			try {
+				final CharBuffer content = CorpusStore.INSTANCE.getCharContent(names.get(ord));
+				if(content != null) {
+					for(int i = 0; i < content.length() - 2; i++)
+						triSet.add(packTrigram(content.get(i), content.get(i + 1), content.get(i + 2)));
+				}
+			} catch(IOException e) {
+				System.err.println(e);
+			}
+			synchronized(postingMap) {
+				triSet.forEach(key -> postingMap.computeIfAbsent(key, k -> new PostingList()).add((char)ord));
+				progress.accept(++done[0]);
+			}
+		});
+		if(stopper.getAsBoolean())
+			return false;
+		// flatten into sorted arrays
+		final long[] newKeys = postingMap.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+		final int[] newStarts = new int[newKeys.length + 1];
+		int total = 0;
+		for(int i = 0; i < newKeys.length; i++) {
+			newStarts[i] = total;
+			total += postingMap.get(newKeys[i]).size;
+		}
+		newStarts[newKeys.length] = total;
+		final char[] newPostings = new char[total];
+		for(int i = 0; i < newKeys.length; i++) {
+			final PostingList plist = postingMap.get(newKeys[i]);
+			System.arraycopy(plist.docs, 0, newPostings, newStarts[i], plist.size);
+			// documents were added in parallel, so sort them
+			Arrays.sort(newPostings, newStarts[i], newStarts[i + 1]);
+		}
+		docNames = names;
+		keys = newKeys;
+		starts = newStarts;
+		postings = newPostings;
+		return true;
+	}
+
+	private boolean load() {
+		final File file = getIndexFile();
+		if(!file.exists())
+			return false;
+		boolean success = false;
+		try(final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				return false;
+			if(!in.readUTF().equals(CorpusStore.INSTANCE.getCorpusStamp()))
+				return false;
+			final int docCount = in.readInt();
+			final List<String> names = new ArrayList<>(docCount);
+			for(int i = 0; i < docCount; i++)
+				names.add(in.readUTF());
+			if(!names.equals(Utilities.cscdFiles))
+				return false;
+			final int keyCount = in.readInt();
+			final int postCount = in.readInt();
+			final long[] newKeys = PackedArrays.readLongs(in, keyCount);
+			final int[] newStarts = PackedArrays.readInts(in, keyCount + 1);
+			final char[] newPostings = PackedArrays.readChars(in, postCount);
+			docNames = names;
+			keys = newKeys;
+			starts = newStarts;
+			postings = newPostings;
+			success = true;
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+		return success;
+	}
+
+	private void save() {
+		final File file = getIndexFile();
+		try(final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(CorpusStore.INSTANCE.getCorpusStamp());
+			out.writeInt(docNames.size());
+			for(final String name : docNames)
+				out.writeUTF(name);
+			out.writeInt(keys.length);
+			out.writeInt(postings.length);
+			PackedArrays.writeLongs(out, keys);
+			PackedArrays.writeInts(out, starts);
+			PackedArrays.writeChars(out, postings);
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+	}
+
+	public synchronized void clear() {
+		docNames = null;
+		keys = null;
+		starts = null;
+		postings = null;
+	}
+
+	// inner classes
+	private static class PostingList {
+		private char[] docs = new char[4];
+		private int size = 0;
+
+		private void add(final char doc) {
+			if(size == docs.length)
+				docs = Arrays.copyOf(docs, size * 2);
+			docs[size++] = doc;
+		}
+	}
+
+	/**
+	 * A minimal open-addressing set of positive longs, avoiding boxing
+	 * while collecting the trigrams of a document.
+	 */
+	private static class LongSet {
+		private long[] table = new long[1 << 12];
+		private int size = 0;
+
+		private void add(final long key) {
+			if(key == 0) return;
+			final int mask = table.length - 1;
+			int i = (int)((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+			while(table[i] != 0) {
+				if(table[i] == key) return;
+				i = (i + 1) & mask;
+			}
+			table[i] = key;
+			if(++size * 2 > table.length)
+				rehash();
+		}
+
+		private void rehash() {
+			final long[] old = table;
+			table = new long[old.length * 2];
+			size = 0;
+			for(final long key : old) {
+				if(key != 0)
+					add(key);
+			}
+		}
+
+		private void forEach(final LongConsumer action) {
+			for(final long key : table) {
+				if(key != 0)
+					action.accept(key);
+			}
+		}
+	}
+}
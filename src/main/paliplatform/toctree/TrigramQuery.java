@@ -0,0 +1,532 @@
+/*
+ * TrigramQuery.java
+ *
+ * Copyright (C) 2023 J. R. Bhaddacak
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package paliplatform.toctree;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * A boolean query of trigrams that any text matching a regex must satisfy.
+ * The regex is analyzed in the way of Russ Cox's code search, i.e., each
+ * sub-expression is summarized by its exact, prefix, and suffix strings,
+ * and a query of trigrams required. The query is only a necessary condition,
+ * so the candidates have to be verified with the full pattern. Regex features
+ * that cannot be analyzed safely (e.g., embedded flags) make the query ALL.
+ * @author J.R. Bhaddacak
+ * @version 2.1
+ * @since 2.1
+ */
+class TrigramQuery {
+	enum Op { ALL, AND, OR, TRIGRAM }
+	static final TrigramQuery ALL = new TrigramQuery(Op.ALL, null, Collections.emptyList());
+	private static final int MAX_SET = 16;
+	private static final int MAX_CLASS = 8;
+	private final Op op;
+	private final String trigram;
+	private final List<TrigramQuery> subQueries;
+
+	private TrigramQuery(final Op op, final String trigram, final List<TrigramQuery> subs) {
+		this.op = op;
+		this.trigram = trigram;
+		subQueries = subs;
+	}
+
+	Op getOp() {
+		return op;
+	}
+
+	String getTrigram() {
+		return trigram;
+	}
+
+	List<TrigramQuery> getSubQueries() {
+		return subQueries;
+	}
+
+	/**
+	 * Analyzes a compiled pattern, returns ALL if it cannot be analyzed.
+	 */
+	static TrigramQuery fromPattern(final Pattern patt) {
+		final int badFlags = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.COMMENTS | Pattern.LITERAL | Pattern.CANON_EQ;
+		if((patt.flags() & badFlags) != 0)
+			return ALL;
+		try {
+			final Parser parser = new Parser(patt.pattern());
+			final Info info = parser.parse();
+			return info.exact != null
+					? and(info.match, fromSet(info.exact))
+					: and(info.match, and(fromSet(info.prefix), fromSet(info.suffix)));
+		} catch(UnsupportedOperationException | IndexOutOfBoundsException | NumberFormatException e) {
+			return ALL;
+		}
+	}
+
+	private static TrigramQuery and(final TrigramQuery q1, final TrigramQuery q2) {
+		if(q1.op == Op.ALL) return q2;
+		if(q2.op == Op.ALL) return q1;
+		final List<TrigramQuery> subs = new ArrayList<>();
+		for(final TrigramQuery q : new TrigramQuery[] { q1, q2 }) {
+			if(q.op == Op.AND)
+				subs.addAll(q.subQueries);
+			else
+				subs.add(q);
+		}
+		return new TrigramQuery(Op.AND, null, dedupe(subs));
+	}
+
+	private static TrigramQuery or(final TrigramQuery q1, final TrigramQuery q2) {
+		if(q1.op == Op.ALL || q2.op == Op.ALL) return ALL;
+		final List<TrigramQuery> subs = new ArrayList<>();
+		for(final TrigramQuery q : new TrigramQuery[] { q1, q2 }) {
+			if(q.op == Op.OR)
+				subs.addAll(q.subQueries);
+			else
+				subs.add(q);
+		}
+		return new TrigramQuery(Op.OR, null, dedupe(subs));
+	}
+
+	private static List<TrigramQuery> dedupe(final List<TrigramQuery> queries) {
+		final Map<String, TrigramQuery> result = new LinkedHashMap<>();
+		for(final TrigramQuery q : queries)
+			result.putIfAbsent(q.toString(), q);
+		return new ArrayList<>(result.values());
+	}
+
+	/**
+	 * Returns the query saying that the text contains one of the strings in the set.
+	 */
+	private static TrigramQuery fromSet(final Set<String> strSet) {
+		if(strSet.isEmpty())
+			return ALL;
+		TrigramQuery result = null;
+		for(final String str : strSet) {
+			if(str.length() < 3)
+				return ALL;
+			TrigramQuery q = ALL;
+			final Set<String> done = new HashSet<>();
+			for(int i = 0; i <= str.length() - 3; i++) {
+				final String tri = str.substring(i, i + 3);
+				if(done.add(tri))
+					q = and(q, new TrigramQuery(Op.TRIGRAM, tri, Collections.emptyList()));
+			}
+			result = result == null ? q : or(result, q);
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		switch(op) {
+			case ALL:
+				return "ALL";
+			case TRIGRAM:
+				return trigram;
+			default:
+				final StringJoiner joiner = new StringJoiner(op == Op.AND ? " " : "|", "(", ")");
+				for(final TrigramQuery q : subQueries)
+					joiner.add(q.toString());
+				return joiner.toString();
+		}
+	}
+
+	// inner classes
+	/**
+	 * The summary of a sub-expression. The exact set is null when unknown.
+	 */
+	private static class Info {
+		private boolean emptyable;
+		private Set<String> exact;
+		private Set<String> prefix;
+		private Set<String> suffix;
+		private TrigramQuery match = ALL;
+
+		private static Info empty() {
+			final Info info = new Info();
+			info.emptyable = true;
+			info.exact = setOf("");
+			info.prefix = setOf("");
+			info.suffix = setOf("");
+			return info;
+		}
+
+		private static Info literal(final char ch) {
+			final Info info = new Info();
+			final String str = String.valueOf(ch);
+			info.exact = setOf(str);
+			info.prefix = setOf(str);
+			info.suffix = setOf(str);
+			return info;
+		}
+
+		private static Info anyChar() {
+			final Info info = new Info();
+			info.prefix = setOf("");
+			info.suffix = setOf("");
+			return info;
+		}
+
+		private static Info anyString() {
+			final Info info = anyChar();
+			info.emptyable = true;
+			return info;
+		}
+
+		private static Set<String> setOf(final String str) {
+			final Set<String> result = new HashSet<>();
+			result.add(str);
+			return result;
+		}
+
+		private static Set<String> union(final Set<String> s1, final Set<String> s2) {
+			final Set<String> result = new HashSet<>(s1);
+			result.addAll(s2);
+			return result;
+		}
+
+		private static Set<String> cross(final Set<String> s1, final Set<String> s2) {
+			final Set<String> result = new HashSet<>();
+			for(final String a : s1) {
+				for(final String b : s2)
+					result.add(a + b);
+			}
+			return result;
+		}
+
+		private static Info alternate(final Info x, final Info y) {
+			final Info info = new Info();
+			info.emptyable = x.emptyable || y.emptyable;
+			if(x.exact != null && y.exact != null) {
+				info.exact = union(x.exact, y.exact);
+			} else {
+				// the unknown side loses the exact info, so keep it in the match
+				x.saveExact();
+				y.saveExact();
+			}
+			info.prefix = union(x.prefix, y.prefix);
+			info.suffix = union(x.suffix, y.suffix);
+			info.match = or(x.match, y.match);
+			info.simplify();
+			return info;
+		}
+
+		private static Info concat(final Info x, final Info y) {
+			final Info info = new Info();
+			info.emptyable = x.emptyable && y.emptyable;
+			if(x.exact != null && y.exact != null) {
+				info.exact = cross(x.exact, y.exact);
+			} else {
+				x.saveExact();
+				y.saveExact();
+			}
+			if(x.exact != null)
+				info.prefix = cross(x.exact, y.prefix);
+			else
+				info.prefix = x.emptyable ? union(x.prefix, y.prefix) : x.prefix;
+			if(y.exact != null)
+				info.suffix = cross(x.suffix, y.exact);
+			else
+				info.suffix = y.emptyable ? union(y.suffix, x.suffix) : y.suffix;
+			info.match = and(and(x.match, y.match), fromSet(cross(x.suffix, y.prefix)));
+			info.simplify();
+			return info;
+		}
+
+		private static Info plus(final Info x) {
+			x.saveExact();
+			final Info info = new Info();
+			info.emptyable = x.emptyable;
+			info.prefix = x.prefix;
+			info.suffix = x.suffix;
+			info.match = x.match;
+			return info;
+		}
+
+		/**
+		 * Moves the exact info into the match, used before the exact set is dropped.
+		 */
+		private void saveExact() {
+			if(exact != null)
+				match = and(match, fromSet(exact));
+		}
+
+		/**
+		 * Keeps the sets small, the information dropped is moved into the match first.
+		 */
+		private void simplify() {
+			if(exact != null && exact.size() > MAX_SET) {
+				saveExact();
+				exact = null;
+			}
+			if(prefix.size() > MAX_SET) {
+				match = and(match, fromSet(prefix));
+				final Set<String> trimmed = new HashSet<>();
+				for(final String s : prefix)
+					trimmed.add(s.length() > 2 ? s.substring(0, 2) : s);
+				prefix = trimmed;
+			}
+			if(suffix.size() > MAX_SET) {
+				match = and(match, fromSet(suffix));
+				final Set<String> trimmed = new HashSet<>();
+				for(final String s : suffix)
+					trimmed.add(s.length() > 2 ? s.substring(s.length() - 2) : s);
+				suffix = trimmed;
+			}
+		}
+	}
+
+	/**
+	 * A recursive-descent parser of Java regex syntax, only as deep as needed
+	 * for the analysis. The pattern is assumed valid, since it is compiled already.
+	 */
+	private static class Parser {
+		private final String patt;
+		private int pos = 0;
+
+		private Parser(final String patt) {
+			this.patt = patt;
+		}
+
+		private int skipPast(final char ch) {
+			final int end = patt.indexOf(ch, pos);
+			if(end < 0) throw new UnsupportedOperationException();
+			return end + 1;
+		}
+
+		private Info parse() {
+			final Info info = parseAlternation();
+			if(pos < patt.length())
+				throw new UnsupportedOperationException();
+			return info;
+		}
+
+		private Info parseAlternation() {
+			Info info = parseConcat();
+			while(pos < patt.length() && patt.charAt(pos) == '|') {
+				pos++;
+				info = Info.alternate(info, parseConcat());
+			}
+			return info;
+		}
+
+		private Info parseConcat() {
+			Info info = Info.empty();
+			while(pos < patt.length()) {
+				final char ch = patt.charAt(pos);
+				if(ch == '|' || ch == ')') break;
+				info = Info.concat(info, parseRepeat());
+			}
+			return info;
+		}
+
+		private Info parseRepeat() {
+			Info info = parseAtom();
+			while(pos < patt.length()) {
+				final char ch = patt.charAt(pos);
+				if(ch == '?') {
+					pos++;
+					info = Info.alternate(info, Info.empty());
+				} else if(ch == '*') {
+					pos++;
+					info = Info.anyString();
+				} else if(ch == '+') {
+					pos++;
+					info = Info.plus(info);
+				} else if(ch == '{') {
+					final int end = patt.indexOf('}', pos);
+					if(end < 0) throw new UnsupportedOperationException();
+					final String[] bounds = patt.substring(pos + 1, end).split(",", -1);
+					final int min = Integer.parseInt(bounds[0].trim());
+					pos = end + 1;
+					info = min == 0 ? Info.anyString() : Info.plus(info);
+				} else {
+					break;
+				}
+				// lazy and possessive quantifiers are the same here
+				if(pos < patt.length() && (patt.charAt(pos) == '?' || patt.charAt(pos) == '+'))
+					pos++;
+			}
+			return info;
+		}
+
+		private Info parseAtom() {
+			final char ch = patt.charAt(pos++);
+			switch(ch) {
+				case '(':
+					return parseGroup();
+				case '[':
+					return parseClass();
+				case '.':
+					return Info.anyChar();
+				case '^':
+				case '$':
+					return Info.empty();
+				case '\\':
+					return parseEscape();
+				default:
+					return Info.literal(ch);
+			}
+		}
+
+		private Info parseGroup() {
+			boolean lookaround = false;
+			if(patt.charAt(pos) == '?') {
+				final char next = patt.charAt(pos + 1);
+				if(next == ':' || next == '>') {
+					pos += 2;
+				} else if(next == '=' || next == '!') {
+					lookaround = true;
+					pos += 2;
+				} else if(next == '<') {
+					final char third = patt.charAt(pos + 2);
+					if(third == '=' || third == '!') {
+						lookaround = true;
+						pos += 3;
+					} else {
+						// named group
+						final int end = patt.indexOf('>', pos);
+						if(end < 0) throw new UnsupportedOperationException();
+						pos = end + 1;
+					}
+				} else {
+					// embedded flags
+					throw new UnsupportedOperationException();
+				}
+			}
+			final Info inner = parseAlternation();
+			if(pos >= patt.length() || patt.charAt(pos) != ')')
+				throw new UnsupportedOperationException();
+			pos++;
+			// a lookaround consumes nothing
+			return lookaround ? Info.empty() : inner;
+		}
+
+		private Info parseClass() {
+			boolean negated = false;
+			boolean complex = false;
+			final Set<Character> chars = new HashSet<>();
+			if(patt.charAt(pos) == '^') {
+				negated = true;
+				pos++;
+			}
+			if(patt.charAt(pos) == ']')
+				throw new UnsupportedOperationException();
+			int depth = 0;
+			while(true) {
+				final char ch = patt.charAt(pos++);
+				if(ch == ']') {
+					if(depth == 0) break;
+					depth--;
+				} else if(ch == '[') {
+					complex = true;
+					depth++;
+				} else if(ch == '\\') {
+					final char esc = patt.charAt(pos++);
+					if(esc == 'Q') {
+						final int end = patt.indexOf("\\E", pos);
+						if(end < 0) throw new UnsupportedOperationException();
+						for(int i = pos; i < end; i++)
+							chars.add(patt.charAt(i));
+						pos = end + 2;
+					} else if(Character.isLetterOrDigit(esc)) {
+						complex = true;
+						if((esc == 'p' || esc == 'P') && patt.charAt(pos) == '{')
+							pos = skipPast('}');
+					} else {
+						chars.add(esc);
+					}
+				} else if(ch == '&' && patt.charAt(pos) == '&') {
+					complex = true;
+					pos++;
+				} else if(ch == '-' && !chars.isEmpty() && patt.charAt(pos) != ']') {
+					// a range
+					complex = true;
+				} else {
+					chars.add(ch);
+				}
+			}
+			if(negated || complex || chars.isEmpty() || chars.size() > MAX_CLASS)
+				return Info.anyChar();
+			Info info = null;
+			for(final char c : chars)
+				info = info == null ? Info.literal(c) : Info.alternate(info, Info.literal(c));
+			return info;
+		}
+
+		private Info parseEscape() {
+			final char ch = patt.charAt(pos++);
+			switch(ch) {
+				case 'Q':
+					int end = patt.indexOf("\\E", pos);
+					if(end < 0) end = patt.length();
+					Info info = Info.empty();
+					for(int i = pos; i < end; i++)
+						info = Info.concat(info, Info.literal(patt.charAt(i)));
+					pos = Math.min(end + 2, patt.length());
+					return info;
+				case 'b': case 'B': case 'A': case 'G': case 'Z': case 'z':
+					return Info.empty();
+				case 't':
+					return Info.literal('\t');
+				case 'n':
+					return Info.literal('\n');
+				case 'r':
+					return Info.literal('\r');
+				case 'f':
+					return Info.literal('\f');
+				case 'k':
+					pos = skipPast('>');
+					return Info.anyString();
+				case 'p': case 'P':
+					if(patt.charAt(pos) == '{')
+						pos = skipPast('}');
+					else
+						pos++;
+					return Info.anyChar();
+				case 'x':
+					if(patt.charAt(pos) == '{')
+						pos = skipPast('}');
+					else
+						pos += 2;
+					return Info.anyChar();
+				case 'u':
+					pos += 4;
+					return Info.anyChar();
+				case 'c':
+					pos++;
+					return Info.anyChar();
+				case '0':
+					while(pos < patt.length() && patt.charAt(pos) >= '0' && patt.charAt(pos) <= '7')
+						pos++;
+					return Info.anyChar();
+				default:
+					if(ch >= '1' && ch <= '9') {
+						// back reference
+						while(pos < patt.length() && Character.isDigit(patt.charAt(pos)))
+							pos++;
+						return Info.anyString();
+					}
+					if(Character.isLetter(ch))
+						return Info.anyChar(); // \d, \w, \s, \h, \v, \R, \X, etc.
+					return Info.literal(ch);
+			}
+		}
+	}
+}
@@ -560,6 +560,8 @@ public class PaliHtmlViewer extends HtmlViewer {
 
 	// for generic viewer, this has to be called
 	public void loadContent() {
+		if(thisDoc.isInArchive())
+			HtmlCache.INSTANCE.recordOpen(thisDoc.getFileName());
 		pageBody = Utilities.readXML(thisDoc.getFileName(), thisDoc.isInArchive());
 		setContent(Utilities.makeHTML(pageBody, true));
 